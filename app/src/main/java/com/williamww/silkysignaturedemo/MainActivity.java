@@ -2,7 +2,6 @@ package com.williamww.silkysignaturedemo;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
 import android.graphics.Color;
 import android.net.Uri;
 import android.os.Environment;
@@ -19,7 +18,6 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -68,13 +66,8 @@ public class MainActivity extends AppCompatActivity {
         mSaveButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                Bitmap signatureBitmap = mSignaturePad.getSignatureBitmap();
-                if (addJpgSignatureToGallery(signatureBitmap)) {
-                    Toast.makeText(MainActivity.this, "Signature saved into the Gallery", Toast.LENGTH_SHORT).show();
-                } else {
-                    Toast.makeText(MainActivity.this, "Unable to store the signature", Toast.LENGTH_SHORT).show();
-                }
-                if (addSvgSignatureToGallery(mSignaturePad.getSignatureSvg())) {
+                addJpgSignatureToGalleryAsync();
+                if (addSvgSignatureToGallery(mSignaturePad)) {
                     Toast.makeText(MainActivity.this, "SVG Signature saved into the Gallery", Toast.LENGTH_SHORT).show();
                 } else {
                     Toast.makeText(MainActivity.this, "Unable to store the SVG signature", Toast.LENGTH_SHORT).show();
@@ -86,8 +79,7 @@ public class MainActivity extends AppCompatActivity {
         mCompressButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                Bitmap signatureBitmap = mSignaturePad.getCompressedSignatureBitmap(50);
-                if (addJpgSignatureToGallery(signatureBitmap)) {
+                if (exportJpgSignatureToGallery(mSignaturePad.getWidth() / 2)) {
                     Toast.makeText(MainActivity.this, "50% compressed signature saved into the Gallery", Toast.LENGTH_SHORT).show();
                 } else {
                     Toast.makeText(MainActivity.this, "Unable to store the signature", Toast.LENGTH_SHORT).show();
@@ -106,29 +98,68 @@ public class MainActivity extends AppCompatActivity {
         return file;
     }
 
-    public void saveBitmapToJPG(Bitmap bitmap, File photo) throws IOException {
-        Bitmap newBitmap = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(newBitmap);
-        canvas.drawColor(Color.WHITE);
-        canvas.drawBitmap(bitmap, 0, 0, null);
-        OutputStream stream = new FileOutputStream(photo);
-        newBitmap.compress(Bitmap.CompressFormat.JPEG, 80, stream);
-        stream.close();
-    }
-
-    public boolean addJpgSignatureToGallery(Bitmap signature) {
+    public boolean exportJpgSignatureToGallery(int width) {
         boolean result = false;
         try {
             File photo = new File(getAlbumStorageDir("SignaturePad"), String.format("Signature_%d.jpg", System.currentTimeMillis()));
-            saveBitmapToJPG(signature, photo);
-            scanMediaFile(photo);
-            result = true;
+            OutputStream stream = new FileOutputStream(photo);
+            // Scaled, composited on white and encoded in one pass
+            try {
+                result = mSignaturePad.exportTo(stream, SignaturePad.EXPORT_FORMAT_JPEG, 80,
+                        width, 0, Color.WHITE, false);
+            } finally {
+                stream.close();
+            }
+            if (result) {
+                scanMediaFile(photo);
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
         return result;
     }
 
+    public void addJpgSignatureToGalleryAsync() {
+        final File photo = new File(getAlbumStorageDir("SignaturePad"), String.format("Signature_%d.jpg", System.currentTimeMillis()));
+        final OutputStream stream;
+        try {
+            stream = new FileOutputStream(photo);
+        } catch (IOException e) {
+            e.printStackTrace();
+            Toast.makeText(MainActivity.this, "Unable to store the signature", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // Compositing and encoding run in the background, the result arrives on the main thread
+        mSignaturePad.compressSignatureBitmapAsync(stream, Bitmap.CompressFormat.JPEG, 80, new SignaturePad.OnExportListener<Boolean>() {
+            @Override
+            public void onExported(Boolean result) {
+                if (closeStream(stream) && result) {
+                    scanMediaFile(photo);
+                    Toast.makeText(MainActivity.this, "Signature saved into the Gallery", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(MainActivity.this, "Unable to store the signature", Toast.LENGTH_SHORT).show();
+                }
+            }
+
+            @Override
+            public void onExportFailed(Throwable error) {
+                error.printStackTrace();
+                closeStream(stream);
+                Toast.makeText(MainActivity.this, "Unable to store the signature", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private boolean closeStream(OutputStream stream) {
+        try {
+            stream.close();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     private void scanMediaFile(File photo) {
         Intent mediaScanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
         Uri contentUri = Uri.fromFile(photo);
@@ -136,15 +167,12 @@ public class MainActivity extends AppCompatActivity {
         MainActivity.this.sendBroadcast(mediaScanIntent);
     }
 
-    public boolean addSvgSignatureToGallery(String signatureSvg) {
+    public boolean addSvgSignatureToGallery(SignaturePad signaturePad) {
         boolean result = false;
         try {
             File svgFile = new File(getAlbumStorageDir("SignaturePad"), String.format("Signature_%d.svg", System.currentTimeMillis()));
             OutputStream stream = new FileOutputStream(svgFile);
-            OutputStreamWriter writer = new OutputStreamWriter(stream);
-            writer.write(signatureSvg);
-            writer.close();
-            stream.flush();
+            signaturePad.writeSignatureSvg(stream);
             stream.close();
             scanMediaFile(svgFile);
             result = true;
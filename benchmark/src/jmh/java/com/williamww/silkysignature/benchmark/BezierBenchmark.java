@@ -0,0 +1,77 @@
+package com.williamww.silkysignature.benchmark;
+
+import com.williamww.silkysignature.utils.Bezier;
+import com.williamww.silkysignature.utils.BezierStepper;
+import com.williamww.silkysignature.utils.TimedPoint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The per segment geometry the renderers run: the length of the segments, their flattening
+ * step count and the walk along them.
+ */
+@State(Scope.Thread)
+public class BezierBenchmark {
+
+    private static final float TOLERANCE = 0.25f;
+
+    @Param({"64", "512", "4096"})
+    public int samples;
+
+    private float[] mCurves;
+    private final Bezier mBezier = new Bezier();
+    private final BezierStepper mStepper = new BezierStepper();
+    private final TimedPoint[] mPoints = {
+            new TimedPoint(), new TimedPoint(), new TimedPoint(), new TimedPoint()
+    };
+
+    @Setup
+    public void setUp() {
+        mCurves = SignatureTraces.curves(SignatureTraces.generate(samples));
+    }
+
+    @Benchmark
+    public float length() {
+        float length = 0;
+        for (int offset = 0; offset < mCurves.length; offset += SignatureTraces.CURVE_FLOATS) {
+            length += curve(offset).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int flatteningSteps() {
+        int steps = 0;
+        for (int offset = 0; offset < mCurves.length; offset += SignatureTraces.CURVE_FLOATS) {
+            steps += curve(offset).flatteningSteps(TOLERANCE);
+        }
+        return steps;
+    }
+
+    @Benchmark
+    public float step() {
+        float sum = 0;
+        for (int offset = 0; offset < mCurves.length; offset += SignatureTraces.CURVE_FLOATS) {
+            Bezier curve = curve(offset);
+            int steps = (int) Math.floor(curve.length());
+            BezierStepper stepper = mStepper.start(curve, Math.max(1, steps));
+            for (int i = 0; i <= steps; i++, stepper.next()) {
+                sum += stepper.x + stepper.y;
+            }
+        }
+        return sum;
+    }
+
+    private Bezier curve(int offset) {
+        float[] c = mCurves;
+        return mBezier.set(
+                mPoints[0].set(c[offset], c[offset + 1], 0),
+                mPoints[1].set(c[offset + 2], c[offset + 3], 0),
+                mPoints[2].set(c[offset + 4], c[offset + 5], 0),
+                mPoints[3].set(c[offset + 6], c[offset + 7], 0));
+    }
+}
@@ -0,0 +1,93 @@
+package com.williamww.silkysignature.benchmark;
+
+import com.williamww.silkysignature.utils.Bezier;
+import com.williamww.silkysignature.utils.SampleFilter;
+import com.williamww.silkysignature.utils.SampleTrace;
+import com.williamww.silkysignature.utils.StrokeEngine;
+import com.williamww.silkysignature.utils.StrokeInput;
+import com.williamww.silkysignature.utils.StrokeStore;
+import com.williamww.silkysignature.utils.SvgBuilder;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Replays the signatures of the corpus through the ingestion of the pad into the SVG export,
+ * the baseline throughput of the whole pipeline without a view.
+ *
+ * Next to the replays per second it reports the samples ingested, the segments rendered and
+ * the bytes of SVG produced per second.
+ */
+@State(Scope.Thread)
+public class ReplayBenchmark {
+
+    @Param({
+            "synthetic-initials", "synthetic-name", "synthetic-long",
+            "synthetic-taps", "synthetic-tremble", "synthetic-flourish"
+    })
+    public String signature;
+
+    private SampleTrace mTrace;
+    private final StrokeEngine mEngine = SignatureTraces.newEngine();
+    private final StrokeInput mInput = new StrokeInput(new StrokeStore(), new SampleFilter(), mEngine);
+    private final SvgBuilder mSvgBuilder = new SvgBuilder();
+    private int mSegments;
+
+    private final StrokeEngine.CurveListener mListener = new StrokeEngine.CurveListener() {
+        @Override
+        public void onCurve(Bezier curve, float startWidth, float endWidth) {
+            mSvgBuilder.append(curve, (startWidth + endWidth) / 2);
+            mSegments++;
+        }
+    };
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long samples;
+        public long segments;
+        public long svgBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            samples = segments = svgBytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        InputStream stream = ReplayBenchmark.class.getResourceAsStream("/corpus/" + signature + ".trace");
+        if (stream == null) {
+            throw new IOException("Missing corpus signature " + signature);
+        }
+        try {
+            mTrace = SampleTrace.read(new InputStreamReader(stream, "UTF-8"));
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Benchmark
+    public String replay(Counters counters) {
+        mInput.getStore().clear();
+        mEngine.reset();
+        mSvgBuilder.clear();
+        mSegments = 0;
+
+        counters.samples += mTrace.replay(mInput, mListener);
+        String svg = mSvgBuilder.build(SignatureTraces.WIDTH, SignatureTraces.HEIGHT);
+        counters.segments += mSegments;
+        // Plain ASCII, one byte per char
+        counters.svgBytes += svg.length();
+        return svg;
+    }
+}
@@ -0,0 +1,124 @@
+package com.williamww.silkysignature.benchmark;
+
+import com.williamww.silkysignature.utils.Bezier;
+import com.williamww.silkysignature.utils.StrokeEngine;
+import com.williamww.silkysignature.utils.StrokeStore;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pen traces shaped like handwritten signatures, the same for every run.
+ *
+ * Each stroke is a pair of oscillations moving to the right, the usual model of cursive
+ * handwriting, sampled every 6 to 10 milliseconds like a touch screen reports it. Strokes are
+ * 24 to 120 samples long and separated by pen lifts.
+ */
+final class SignatureTraces {
+
+    static final int WIDTH = 1080;
+    static final int HEIGHT = 540;
+
+    static final float MIN_WIDTH = 3f;
+    static final float MAX_WIDTH = 7f;
+    static final float VELOCITY_FILTER_WEIGHT = 0.9f;
+
+    // start, control1, control2 and end point, start and end width
+    static final int CURVE_FLOATS = 10;
+
+    private SignatureTraces() {
+    }
+
+    /**
+     * @param samples number of samples of the trace.
+     * @return the samples, timestamps in nanoseconds as the pad stores them.
+     */
+    static StrokeStore generate(int samples) {
+        Random random = new Random(samples);
+        StrokeStore trace = new StrokeStore();
+        long time = 0;
+        float lineX = 60, lineY = 160;
+        int added = 0;
+        while (added < samples) {
+            int count = Math.min(samples - added, 24 + random.nextInt(97));
+            float amplitudeX = 10 + random.nextFloat() * 25;
+            float amplitudeY = 25 + random.nextFloat() * 45;
+            float frequencyX = (float) (2 * Math.PI / (120 + random.nextInt(180)));
+            float frequencyY = (float) (2 * Math.PI / (120 + random.nextInt(180)));
+            float phase = random.nextFloat() * (float) Math.PI;
+            // pixel per millisecond
+            float drift = 0.2f + random.nextFloat() * 0.4f;
+
+            trace.startStroke();
+            long elapsed = 0;
+            for (int i = 0; i < count; i++) {
+                float x = lineX + drift * elapsed + amplitudeX * (float) Math.sin(frequencyX * elapsed + phase);
+                float y = lineY + amplitudeY * (float) Math.sin(frequencyY * elapsed);
+                trace.add(clamp(x, WIDTH), clamp(y, HEIGHT), TimeUnit.MILLISECONDS.toNanos(time + elapsed));
+                elapsed += 6 + random.nextInt(5);
+            }
+            added += count;
+
+            time += elapsed + 80 + random.nextInt(220);
+            lineX += drift * elapsed + 20;
+            if (lineX > WIDTH - 200) {
+                lineX = 60;
+                lineY = lineY + 140 > HEIGHT - 80 ? 160 : lineY + 140;
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * Feeds the trace through the engine into the store, as the pad does while drawing.
+     */
+    static void ingest(StrokeStore trace, StrokeStore store, StrokeEngine engine, StrokeEngine.CurveListener listener) {
+        store.clear();
+        engine.reset();
+        for (int s = 0; s < trace.strokeCount(); s++) {
+            store.startStroke();
+            for (int i = trace.strokeStart(s); i < trace.strokeEnd(s); i++) {
+                engine.addPoint(store, trace.getX(i), trace.getY(i), trace.getTime(i), listener);
+            }
+        }
+    }
+
+    /**
+     * @return the smoothed segments of the trace, {@link #CURVE_FLOATS} per segment.
+     */
+    static float[] curves(StrokeStore trace) {
+        final float[][] curves = {new float[CURVE_FLOATS * 256]};
+        final int[] count = {0};
+        ingest(trace, new StrokeStore(), newEngine(), new StrokeEngine.CurveListener() {
+            @Override
+            public void onCurve(Bezier curve, float startWidth, float endWidth) {
+                int offset = count[0] * CURVE_FLOATS;
+                if (offset + CURVE_FLOATS > curves[0].length) {
+                    curves[0] = Arrays.copyOf(curves[0], curves[0].length * 2);
+                }
+                float[] c = curves[0];
+                c[offset] = curve.startPoint.x;
+                c[offset + 1] = curve.startPoint.y;
+                c[offset + 2] = curve.control1.x;
+                c[offset + 3] = curve.control1.y;
+                c[offset + 4] = curve.control2.x;
+                c[offset + 5] = curve.control2.y;
+                c[offset + 6] = curve.endPoint.x;
+                c[offset + 7] = curve.endPoint.y;
+                c[offset + 8] = startWidth;
+                c[offset + 9] = endWidth;
+                count[0]++;
+            }
+        });
+        return Arrays.copyOf(curves[0], count[0] * CURVE_FLOATS);
+    }
+
+    static StrokeEngine newEngine() {
+        return new StrokeEngine().setPen(MIN_WIDTH, MAX_WIDTH, VELOCITY_FILTER_WEIGHT);
+    }
+
+    private static float clamp(float value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+}
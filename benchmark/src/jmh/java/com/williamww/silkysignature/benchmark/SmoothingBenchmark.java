@@ -0,0 +1,54 @@
+package com.williamww.silkysignature.benchmark;
+
+import com.williamww.silkysignature.utils.Bezier;
+import com.williamww.silkysignature.utils.StrokeEngine;
+import com.williamww.silkysignature.utils.StrokeStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The control point and width computation of {@link StrokeEngine}, once sample by sample as
+ * the pad draws and once over stored strokes as the exports render them.
+ */
+@State(Scope.Thread)
+public class SmoothingBenchmark {
+
+    @Param({"64", "512", "4096"})
+    public int samples;
+
+    private StrokeStore mTrace;
+    private final StrokeStore mStore = new StrokeStore();
+    private final StrokeEngine mEngine = SignatureTraces.newEngine();
+    private float mSink;
+
+    private final StrokeEngine.CurveListener mListener = new StrokeEngine.CurveListener() {
+        @Override
+        public void onCurve(Bezier curve, float startWidth, float endWidth) {
+            mSink += curve.control1.x + curve.control2.y + endWidth;
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        mTrace = SignatureTraces.generate(samples);
+        SignatureTraces.ingest(mTrace, mStore, mEngine, mListener);
+    }
+
+    @Benchmark
+    public float ingest() {
+        mSink = 0;
+        SignatureTraces.ingest(mTrace, mStore, mEngine, mListener);
+        return mSink;
+    }
+
+    @Benchmark
+    public float render() {
+        mSink = 0;
+        mEngine.render(mStore, mListener);
+        return mSink;
+    }
+}
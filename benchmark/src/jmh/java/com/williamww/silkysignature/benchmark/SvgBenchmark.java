@@ -0,0 +1,64 @@
+package com.williamww.silkysignature.benchmark;
+
+import com.williamww.silkysignature.utils.Bezier;
+import com.williamww.silkysignature.utils.SvgBuilder;
+import com.williamww.silkysignature.utils.SvgPathBuilder;
+import com.williamww.silkysignature.utils.TimedPoint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The SVG export: appending the segments with their widths as the pad does and building
+ * the document, and the path builder on its own.
+ */
+@State(Scope.Thread)
+public class SvgBenchmark {
+
+    @Param({"64", "512", "4096"})
+    public int samples;
+
+    private float[] mCurves;
+    private final SvgBuilder mSvgBuilder = new SvgBuilder();
+    private final SvgPathBuilder mPathBuilder = new SvgPathBuilder();
+    private final Bezier mBezier = new Bezier();
+    private final TimedPoint[] mPoints = {
+            new TimedPoint(), new TimedPoint(), new TimedPoint(), new TimedPoint()
+    };
+
+    @Setup
+    public void setUp() {
+        mCurves = SignatureTraces.curves(SignatureTraces.generate(samples));
+    }
+
+    @Benchmark
+    public String build() {
+        mSvgBuilder.clear();
+        float[] c = mCurves;
+        for (int offset = 0; offset < c.length; offset += SignatureTraces.CURVE_FLOATS) {
+            Bezier curve = mBezier.set(
+                    mPoints[0].set(c[offset], c[offset + 1], 0),
+                    mPoints[1].set(c[offset + 2], c[offset + 3], 0),
+                    mPoints[2].set(c[offset + 4], c[offset + 5], 0),
+                    mPoints[3].set(c[offset + 6], c[offset + 7], 0));
+            mSvgBuilder.append(curve, (c[offset + 8] + c[offset + 9]) / 2);
+        }
+        return mSvgBuilder.build(SignatureTraces.WIDTH, SignatureTraces.HEIGHT);
+    }
+
+    @Benchmark
+    public String path() {
+        float[] c = mCurves;
+        mPathBuilder.reset(Math.round(c[0]), Math.round(c[1]), Math.round(SignatureTraces.MAX_WIDTH));
+        for (int offset = 0; offset < c.length; offset += SignatureTraces.CURVE_FLOATS) {
+            mPathBuilder.append(
+                    Math.round(c[offset + 2]), Math.round(c[offset + 3]),
+                    Math.round(c[offset + 4]), Math.round(c[offset + 5]),
+                    Math.round(c[offset + 6]), Math.round(c[offset + 7]));
+        }
+        return mPathBuilder.toString();
+    }
+}
@@ -2,11 +2,18 @@ package com.williamww.silkysignature.utils;
 
 public class Bezier {
 
+    //Difference between control polygon and chord below which a piece counts as flat
+    private static final float LENGTH_TOLERANCE = 0.1f;
+    private static final int MAX_SUBDIVISION_DEPTH = 8;
+
     public TimedPoint startPoint;
     public TimedPoint control1;
     public TimedPoint control2;
     public TimedPoint endPoint;
 
+    private final TimedPoint mOwnStart = new TimedPoint();
+    private final TimedPoint mOwnEnd = new TimedPoint();
+
     public Bezier set(TimedPoint startPoint, TimedPoint control1,
                   TimedPoint control2, TimedPoint endPoint) {
         this.startPoint = startPoint;
@@ -16,33 +23,88 @@ public class Bezier {
         return this;
     }
 
+    /**
+     * Sets the curve between two samples of a {@link StrokeStore}, read by index.
+     */
+    public Bezier set(StrokeStore store, int startIndex, TimedPoint control1,
+                      TimedPoint control2, int endIndex) {
+        return set(store.get(startIndex, mOwnStart), control1, control2, store.get(endIndex, mOwnEnd));
+    }
+
+    /**
+     * Estimates the length by adaptive subdivision. Flat parts end after a single comparison
+     * of the control polygon with the chord, only bent parts are split further.
+     */
     public float length() {
-        int steps = 10;
-        float length = 0;
-        double cx, cy, px = 0, py = 0, xDiff, yDiff;
-
-        for (int i = 0; i <= steps; i++) {
-            float t = (float) i / steps;
-            cx = point(t, this.startPoint.x, this.control1.x,
-                    this.control2.x, this.endPoint.x);
-            cy = point(t, this.startPoint.y, this.control1.y,
-                    this.control2.y, this.endPoint.y);
-            if (i > 0) {
-                xDiff = cx - px;
-                yDiff = cy - py;
-                length += Math.sqrt(xDiff * xDiff + yDiff * yDiff);
+        return length(startPoint.x, startPoint.y, control1.x, control1.y,
+                control2.x, control2.y, endPoint.x, endPoint.y, 0);
+    }
+
+    private static float length(float x0, float y0, float x1, float y1,
+                                float x2, float y2, float x3, float y3, int depth) {
+        float chord = distance(x0, y0, x3, y3);
+        float polygon = distance(x0, y0, x1, y1) + distance(x1, y1, x2, y2) + distance(x2, y2, x3, y3);
+        if (polygon - chord <= LENGTH_TOLERANCE || depth >= MAX_SUBDIVISION_DEPTH) {
+            // The arc lies between chord and polygon
+            return (chord + polygon) / 2;
+        }
+        // Split in halves (de Casteljau)
+        float x01 = (x0 + x1) / 2, y01 = (y0 + y1) / 2;
+        float x12 = (x1 + x2) / 2, y12 = (y1 + y2) / 2;
+        float x23 = (x2 + x3) / 2, y23 = (y2 + y3) / 2;
+        float x012 = (x01 + x12) / 2, y012 = (y01 + y12) / 2;
+        float x123 = (x12 + x23) / 2, y123 = (y12 + y23) / 2;
+        float xm = (x012 + x123) / 2, ym = (y012 + y123) / 2;
+        return length(x0, y0, x01, y01, x012, y012, xm, ym, depth + 1)
+                + length(xm, ym, x123, y123, x23, y23, x3, y3, depth + 1);
+    }
+
+    /**
+     * Number of equal parameter steps after which the polyline through the steps stays
+     * within the given distance of the curve (Wang's formula). Follows the curvature,
+     * a straight segment needs a single step whatever its length and however its control
+     * points are spread along it.
+     *
+     * @param tolerance the allowed distance in pixel.
+     */
+    public int flatteningSteps(float tolerance) {
+        // The curve stays within the hull of its control points, if they are all that close to
+        // the chord so is the curve. Wang's formula alone counts uneven speed along a line too
+        float chordX = endPoint.x - startPoint.x;
+        float chordY = endPoint.y - startPoint.y;
+        float chord = (float) Math.sqrt(chordX * chordX + chordY * chordY);
+        if (chord > 0) {
+            float d1 = Math.abs(chordX * (control1.y - startPoint.y) - chordY * (control1.x - startPoint.x));
+            float d2 = Math.abs(chordX * (control2.y - startPoint.y) - chordY * (control2.x - startPoint.x));
+            float p1 = chordX * (control1.x - startPoint.x) + chordY * (control1.y - startPoint.y);
+            float p2 = chordX * (control2.x - startPoint.x) + chordY * (control2.y - startPoint.y);
+            float squared = chord * chord;
+            // Off the chord by at most the tolerance, and not beyond its ends
+            if (Math.max(d1, d2) <= tolerance * chord
+                    && Math.min(p1, p2) >= 0 && Math.max(p1, p2) <= squared) {
+                return 1;
             }
-            px = cx;
-            py = cy;
         }
-        return length;
+        float ddx1 = startPoint.x - 2 * control1.x + control2.x;
+        float ddy1 = startPoint.y - 2 * control1.y + control2.y;
+        float ddx2 = control1.x - 2 * control2.x + endPoint.x;
+        float ddy2 = control1.y - 2 * control2.y + endPoint.y;
+        float dd = Math.max(ddx1 * ddx1 + ddy1 * ddy1, ddx2 * ddx2 + ddy2 * ddy2);
+        float steps = (float) Math.sqrt(0.75f * (float) Math.sqrt(dd) / tolerance);
+        return Math.max(1, (int) Math.ceil(steps));
+    }
 
+    private static float distance(float x0, float y0, float x1, float y1) {
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        return (float) Math.sqrt(dx * dx + dy * dy);
     }
 
-    public double point(float t, float start, float c1, float c2, float end) {
-        return start * (1.0 - t) * (1.0 - t) * (1.0 - t)
-                + 3.0 * c1 * (1.0 - t) * (1.0 - t) * t
-                + 3.0 * c2 * (1.0 - t) * t * t
+    public float point(float t, float start, float c1, float c2, float end) {
+        float u = 1 - t;
+        return start * u * u * u
+                + 3 * c1 * u * u * t
+                + 3 * c2 * u * t * t
                 + end * t * t * t;
     }
 
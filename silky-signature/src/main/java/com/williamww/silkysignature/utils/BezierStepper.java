@@ -0,0 +1,75 @@
+package com.williamww.silkysignature.utils;
+
+/**
+ * Walks a cubic Bezier curve in equal parameter steps by forward differencing, so every step
+ * costs a few additions instead of evaluating the Bernstein polynomials.
+ *
+ * Besides the point it tracks the derivative, which gives the tangent for outlines.
+ */
+public class BezierStepper {
+
+    /** The current point. */
+    public float x, y;
+    /** The derivative at the current point. */
+    public float dx, dy;
+
+    private float mX1, mX2, mX3, mY1, mY2, mY3;
+    private float mDx1, mDx2, mDy1, mDy2;
+
+    /**
+     * Moves to the start of the curve.
+     *
+     * @param steps number of steps to the end of the curve.
+     * @return this stepper.
+     */
+    public BezierStepper start(Bezier curve, int steps) {
+        final float h = 1f / Math.max(1, steps);
+        final float hh = h * h;
+        final float hhh = hh * h;
+
+        final float x0 = curve.startPoint.x, y0 = curve.startPoint.y;
+        final float x1 = curve.control1.x, y1 = curve.control1.y;
+        final float x2 = curve.control2.x, y2 = curve.control2.y;
+        final float x3 = curve.endPoint.x, y3 = curve.endPoint.y;
+
+        // B(t) = a t^3 + b t^2 + c t + d
+        final float ax = -x0 + 3 * x1 - 3 * x2 + x3, ay = -y0 + 3 * y1 - 3 * y2 + y3;
+        final float bx = 3 * x0 - 6 * x1 + 3 * x2, by = 3 * y0 - 6 * y1 + 3 * y2;
+        final float cx = 3 * (x1 - x0), cy = 3 * (y1 - y0);
+
+        x = x0;
+        y = y0;
+        mX1 = ax * hhh + bx * hh + cx * h;
+        mY1 = ay * hhh + by * hh + cy * h;
+        mX2 = 6 * ax * hhh + 2 * bx * hh;
+        mY2 = 6 * ay * hhh + 2 * by * hh;
+        mX3 = 6 * ax * hhh;
+        mY3 = 6 * ay * hhh;
+
+        // B'(t) = 3a t^2 + 2b t + c
+        dx = cx;
+        dy = cy;
+        mDx1 = 3 * ax * hh + 2 * bx * h;
+        mDy1 = 3 * ay * hh + 2 * by * h;
+        mDx2 = 6 * ax * hh;
+        mDy2 = 6 * ay * hh;
+        return this;
+    }
+
+    /**
+     * Advances by one step.
+     */
+    public void next() {
+        x += mX1;
+        y += mY1;
+        mX1 += mX2;
+        mY1 += mY2;
+        mX2 += mX3;
+        mY2 += mY3;
+
+        dx += mDx1;
+        dy += mDy1;
+        mDx1 += mDx2;
+        mDy1 += mDy2;
+    }
+}
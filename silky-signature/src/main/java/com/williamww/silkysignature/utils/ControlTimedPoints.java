@@ -8,10 +8,20 @@ public class ControlTimedPoints {
     public TimedPoint c1;
     public TimedPoint c2;
 
+    private final TimedPoint mOwnC1 = new TimedPoint();
+    private final TimedPoint mOwnC2 = new TimedPoint();
+
     public ControlTimedPoints set(TimedPoint c1, TimedPoint c2) {
         this.c1 = c1;
         this.c2 = c2;
         return this;
     }
 
+    /**
+     * Sets the control points by value into points owned by this instance, so no point is allocated.
+     */
+    public ControlTimedPoints set(float c1x, float c1y, float c2x, float c2y, long timestamp) {
+        return set(mOwnC1.set(c1x, c1y, timestamp), mOwnC2.set(c2x, c2y, timestamp));
+    }
+
 }
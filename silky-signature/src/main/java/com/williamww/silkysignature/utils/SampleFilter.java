@@ -0,0 +1,138 @@
+package com.williamww.silkysignature.utils;
+
+/**
+ * Thins out the input samples of a stroke before they are smoothed and stored.
+ *
+ * While drawing, samples closer than a minimum distance or a minimum time to the previous one
+ * are dropped, which saves whole segments on slow and trembling pens. When the stroke ends,
+ * the Ramer-Douglas-Peucker algorithm removes the samples that lie within a tolerance of the
+ * line through their neighbours, shrinking the stored strokes. Every limit of 0 is off.
+ */
+public class SampleFilter {
+
+    private float mMinDistance;
+    private long mMinTimeDelta;
+    private float mTolerance;
+
+    // Cache
+    private boolean[] mKeepCached = new boolean[0];
+    private int[] mStackCached = new int[0];
+
+    /**
+     * @param minDistance samples closer than this to the previous one are dropped, in pixel.
+     */
+    public SampleFilter setMinDistance(float minDistance) {
+        mMinDistance = minDistance;
+        return this;
+    }
+
+    /**
+     * @param minTimeDelta samples closer in time than this to the previous one are dropped,
+     *                     in nanoseconds.
+     */
+    public SampleFilter setMinTimeDelta(long minTimeDelta) {
+        mMinTimeDelta = minTimeDelta;
+        return this;
+    }
+
+    /**
+     * @param tolerance the distance in pixel a sample may have from the simplified stroke.
+     */
+    public SampleFilter setSimplifyTolerance(float tolerance) {
+        mTolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * @return the tolerance of {@link #setSimplifyTolerance(float)}, 0 for none.
+     */
+    public float getSimplifyTolerance() {
+        return mTolerance;
+    }
+
+    /**
+     * Decides whether a sample is added to the current stroke. The first one always is.
+     */
+    public boolean accept(StrokeStore store, float x, float y, long time) {
+        int last = store.size() - 1;
+        if (last < store.currentStrokeStart()) {
+            return true;
+        }
+        if (mMinTimeDelta > 0 && time - store.getTime(last) < mMinTimeDelta) {
+            return false;
+        }
+        if (mMinDistance > 0) {
+            float dx = x - store.getX(last);
+            float dy = y - store.getY(last);
+            return dx * dx + dy * dy >= mMinDistance * mMinDistance;
+        }
+        return true;
+    }
+
+    /**
+     * Simplifies the finished current stroke of the store. The duplicated first sample the
+     * smoothing starts with and the last sample are kept.
+     *
+     * @return the number of removed samples.
+     */
+    public int simplify(StrokeStore store) {
+        int start = store.currentStrokeStart();
+        int count = store.size() - start;
+        if (mTolerance <= 0 || count <= 3) {
+            return 0;
+        }
+        if (mKeepCached.length < count) {
+            mKeepCached = new boolean[count];
+            mStackCached = new int[count * 2];
+        }
+        boolean[] keep = mKeepCached;
+        for (int i = 0; i < count; i++) {
+            keep[i] = false;
+        }
+        keep[0] = true;
+        keep[1] = true;
+        keep[count - 1] = true;
+
+        // Iterative, a long stroke would overflow the call stack
+        int[] stack = mStackCached;
+        int top = 0;
+        stack[top++] = 1;
+        stack[top++] = count - 1;
+        float toleranceSquared = mTolerance * mTolerance;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            float ax = store.getX(start + first), ay = store.getY(start + first);
+            float bx = store.getX(start + last), by = store.getY(start + last);
+            float dx = bx - ax, dy = by - ay;
+            float lengthSquared = dx * dx + dy * dy;
+
+            int farthest = -1;
+            float farthestDistance = toleranceSquared;
+            for (int i = first + 1; i < last; i++) {
+                float px = store.getX(start + i) - ax;
+                float py = store.getY(start + i) - ay;
+                float distance;
+                if (lengthSquared == 0) {
+                    distance = px * px + py * py;
+                } else {
+                    // Squared distance to the line, no square root needed for the comparison
+                    float cross = px * dy - py * dx;
+                    distance = cross * cross / lengthSquared;
+                }
+                if (distance > farthestDistance) {
+                    farthestDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+        return store.retainInCurrentStroke(keep);
+    }
+}
@@ -0,0 +1,191 @@
+package com.williamww.silkysignature.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * A recorded sequence of pen samples with their action, for replaying a signature without a
+ * view, e.g. in tests and benchmarks.
+ *
+ * {@link #replay(StrokeInput, StrokeEngine.CurveListener)} feeds the samples the way the pad
+ * handles its touch events. Batched historical samples of a move event are plain move samples.
+ * The text form has one sample per line, {@code action x y time} with the action
+ * {@code down}, {@code move} or {@code up} and the time in nanoseconds; lines starting with
+ * {@code #} are comments.
+ */
+public class SampleTrace {
+
+    // Same values as the MotionEvent actions
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_UP = 1;
+    public static final int ACTION_MOVE = 2;
+
+    private static final String[] ACTION_NAMES = {"down", "up", "move"};
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int[] mActions = new int[INITIAL_CAPACITY];
+    private float[] mX = new float[INITIAL_CAPACITY];
+    private float[] mY = new float[INITIAL_CAPACITY];
+    private long[] mTime = new long[INITIAL_CAPACITY];
+    private int mSize;
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * @param action one of the {@code ACTION_} constants.
+     * @param time timestamp in nanoseconds.
+     */
+    public SampleTrace add(int action, float x, float y, long time) {
+        if (action < ACTION_DOWN || action > ACTION_MOVE) {
+            throw new IllegalArgumentException("Unknown action " + action);
+        }
+        if (mSize == mActions.length) {
+            int capacity = mSize * 2;
+            mActions = Arrays.copyOf(mActions, capacity);
+            mX = Arrays.copyOf(mX, capacity);
+            mY = Arrays.copyOf(mY, capacity);
+            mTime = Arrays.copyOf(mTime, capacity);
+        }
+        mActions[mSize] = action;
+        mX[mSize] = x;
+        mY[mSize] = y;
+        mTime[mSize] = time;
+        mSize++;
+        return this;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int getAction(int index) {
+        return mActions[index];
+    }
+
+    public float getX(int index) {
+        return mX[index];
+    }
+
+    public float getY(int index) {
+        return mY[index];
+    }
+
+    public long getTime(int index) {
+        return mTime[index];
+    }
+
+    /**
+     * Feeds the samples into the input like the touch events of the pad: a down sample starts
+     * a stroke and is added twice, as the pad handles it as a move as well, an up sample ends
+     * the stroke.
+     *
+     * @return the number of samples the filter let through.
+     */
+    public int replay(StrokeInput input, StrokeEngine.CurveListener listener) {
+        int added = 0;
+        for (int i = 0; i < mSize; i++) {
+            float x = mX[i];
+            float y = mY[i];
+            long time = mTime[i];
+            switch (mActions[i]) {
+                case ACTION_DOWN:
+                    input.startStroke();
+                    if (input.add(x, y, time, listener)) added++;
+                    if (input.add(x, y, time, listener)) added++;
+                    break;
+                case ACTION_MOVE:
+                    if (input.add(x, y, time, listener)) added++;
+                    break;
+                case ACTION_UP:
+                    if (input.add(x, y, time, listener)) added++;
+                    input.endStroke();
+                    break;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Recovers the samples of stored strokes, e.g. read with {@link StrokeCodec}. The copies of
+     * the first sample the ingestion adds are skipped, a replay adds them again.
+     */
+    public static SampleTrace fromStrokes(StrokeStore strokes) {
+        SampleTrace trace = new SampleTrace();
+        for (int s = 0; s < strokes.strokeCount(); s++) {
+            int start = strokes.strokeStart(s);
+            int end = strokes.strokeEnd(s);
+            if (end == start) {
+                continue;
+            }
+            float x = strokes.getX(start);
+            float y = strokes.getY(start);
+            long time = strokes.getTime(start);
+            trace.add(ACTION_DOWN, x, y, time);
+            int first = start + 1;
+            while (first < end && strokes.getX(first) == x && strokes.getY(first) == y
+                    && strokes.getTime(first) == time) {
+                first++;
+            }
+            for (int i = first; i < end - 1; i++) {
+                trace.add(ACTION_MOVE, strokes.getX(i), strokes.getY(i), strokes.getTime(i));
+            }
+            int last = Math.max(first, end - 1);
+            if (last < end) {
+                trace.add(ACTION_UP, strokes.getX(last), strokes.getY(last), strokes.getTime(last));
+            } else {
+                trace.add(ACTION_UP, x, y, time);
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * Writes the text form. The writer is neither flushed nor closed.
+     */
+    public void write(Writer writer) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        for (int i = 0; i < mSize; i++) {
+            line.setLength(0);
+            line.append(ACTION_NAMES[mActions[i]]).append(' ')
+                    .append(mX[i]).append(' ')
+                    .append(mY[i]).append(' ')
+                    .append(mTime[i]).append('\n');
+            writer.append(line);
+        }
+    }
+
+    /**
+     * Reads the text form.
+     *
+     * @throws IOException if a line is not a valid sample.
+     */
+    public static SampleTrace read(Reader reader) throws IOException {
+        SampleTrace trace = new SampleTrace();
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            int action = fields.length == 4 ? Arrays.asList(ACTION_NAMES).indexOf(fields[0]) : -1;
+            if (action < 0) {
+                throw new IOException("Invalid sample on line " + lineNumber + ": " + line);
+            }
+            try {
+                trace.add(action, Float.parseFloat(fields[1]), Float.parseFloat(fields[2]), Long.parseLong(fields[3]));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid sample on line " + lineNumber + ": " + line);
+            }
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,212 @@
+package com.williamww.silkysignature.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compact binary format for the raw strokes of a pad.
+ *
+ * The stream starts with a versioned header holding the pad size and the pen settings, so
+ * the stroke widths can be recomputed exactly when the strokes are rendered again.
+ * Coordinates are stored in fixed point and, like the timestamps, as varint encoded deltas
+ * to the previous sample.
+ *
+ * <pre>
+ * magic "SSIG", version byte
+ * varint width, varint height, int penColor,
+ * float minWidth, float maxWidth, float velocityFilterWeight,
+ * varint coordinateScale, varlong timeResolution, varlong baseTime, varint strokeCount
+ * per stroke: varint pointCount, per point: zigzag dx, zigzag dy, zigzag dt
+ * </pre>
+ *
+ * Timestamps are nanoseconds, stored in ticks of timeResolution nanoseconds: the coarsest of
+ * milliseconds, microseconds and nanoseconds that holds them exactly.
+ */
+public class StrokeCodec {
+
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x53534947; // "SSIG"
+    // Coordinates are stored in 1/16 pixel
+    private static final int COORDINATE_SCALE = 16;
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    /**
+     * Pad size and pen settings the strokes were drawn with.
+     */
+    public static class Header {
+        public int width;
+        public int height;
+        public int penColor;
+        public float minWidth;
+        public float maxWidth;
+        public float velocityFilterWeight;
+    }
+
+    private StrokeCodec() {
+    }
+
+    /**
+     * Writes the header and all strokes of the store. The stream is flushed but not closed.
+     */
+    public static void write(OutputStream stream, Header header, StrokeStore strokes) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeVarLong(out, header.width);
+        writeVarLong(out, header.height);
+        out.writeInt(header.penColor);
+        out.writeFloat(header.minWidth);
+        out.writeFloat(header.maxWidth);
+        out.writeFloat(header.velocityFilterWeight);
+        writeVarLong(out, COORDINATE_SCALE);
+
+        long resolution = timeResolution(strokes);
+        writeVarLong(out, resolution);
+        long lastTime = strokes.isEmpty() ? 0 : strokes.getTime(0) / resolution;
+        writeVarLong(out, zigZag(lastTime));
+
+        // Empty strokes carry nothing worth storing
+        int strokeCount = 0;
+        for (int s = 0; s < strokes.strokeCount(); s++) {
+            if (strokes.strokeEnd(s) > strokes.strokeStart(s)) {
+                strokeCount++;
+            }
+        }
+        writeVarLong(out, strokeCount);
+
+        long lastX = 0, lastY = 0;
+        for (int s = 0; s < strokes.strokeCount(); s++) {
+            int start = strokes.strokeStart(s);
+            int end = strokes.strokeEnd(s);
+            if (end == start) {
+                continue;
+            }
+            writeVarLong(out, end - start);
+            for (int i = start; i < end; i++) {
+                // Deltas of the rounded positions, so rounding errors do not add up
+                long x = Math.round(strokes.getX(i) * (double) COORDINATE_SCALE);
+                long y = Math.round(strokes.getY(i) * (double) COORDINATE_SCALE);
+                long time = strokes.getTime(i) / resolution;
+                writeVarLong(out, zigZag(x - lastX));
+                writeVarLong(out, zigZag(y - lastY));
+                writeVarLong(out, zigZag(time - lastTime));
+                lastX = x;
+                lastY = y;
+                lastTime = time;
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a stream written by {@link #write(OutputStream, Header, StrokeStore)}.
+     * Varints are read byte by byte, so pass a buffered stream.
+     *
+     * @param stream the source.
+     * @param strokes receives the strokes, it is cleared first.
+     * @return the header of the stream.
+     * @throws IOException if the stream is not a valid stroke stream.
+     */
+    public static Header read(InputStream stream, StrokeStore strokes) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a signature stroke stream");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported signature stroke stream version " + version);
+        }
+
+        Header header = new Header();
+        header.width = readCount(in);
+        header.height = readCount(in);
+        header.penColor = in.readInt();
+        header.minWidth = in.readFloat();
+        header.maxWidth = in.readFloat();
+        header.velocityFilterWeight = in.readFloat();
+        int scale = readCount(in);
+        if (scale == 0) {
+            throw new IOException("Invalid coordinate scale");
+        }
+
+        long resolution = readVarLong(in);
+        if (resolution <= 0) {
+            throw new IOException("Invalid time resolution");
+        }
+
+        strokes.clear();
+        long lastTime = unZigZag(readVarLong(in));
+        long lastX = 0, lastY = 0;
+        int strokeCount = readCount(in);
+        for (int s = 0; s < strokeCount; s++) {
+            int pointCount = readCount(in);
+            strokes.startStroke();
+            for (int i = 0; i < pointCount; i++) {
+                lastX += unZigZag(readVarLong(in));
+                lastY += unZigZag(readVarLong(in));
+                lastTime += unZigZag(readVarLong(in));
+                strokes.add(lastX / (float) scale, lastY / (float) scale, lastTime * resolution);
+            }
+        }
+        return header;
+    }
+
+    /**
+     * @return the coarsest resolution in nanoseconds all timestamps are a multiple of.
+     */
+    private static long timeResolution(StrokeStore strokes) {
+        long resolution = NANOS_PER_MILLI;
+        for (int i = 0; i < strokes.size() && resolution > 1; i++) {
+            while (strokes.getTime(i) % resolution != 0) {
+                resolution = resolution == NANOS_PER_MILLI ? NANOS_PER_MICRO : 1;
+            }
+        }
+        return resolution;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Invalid count " + value);
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,294 @@
+package com.williamww.silkysignature.utils;
+
+/**
+ * Turns the samples of a {@link StrokeStore} into smoothed Bezier segments with velocity
+ * based widths, independently of any view.
+ *
+ * The pad feeds it sample by sample while drawing, {@link #render(StrokeStore, CurveListener)}
+ * runs the same pipeline over stored strokes, optionally scaled into another output size.
+ * An engine keeps the state of the stroke being smoothed, so use one instance per thread.
+ */
+public class StrokeEngine {
+
+    /**
+     * Receives every smoothed segment.
+     */
+    public interface CurveListener {
+        /**
+         * @param curve the segment, only valid during the call.
+         * @param startWidth the stroke width at the start of the segment.
+         * @param endWidth the stroke width at the end of the segment.
+         */
+        void onCurve(Bezier curve, float startWidth, float endWidth);
+    }
+
+    private float mMinWidth;
+    private float mMaxWidth;
+    private float mVelocityFilterWeight;
+
+    private float mLastVelocity;
+    private float mLastWidth;
+
+    private float mScale = 1f;
+    private float mOffsetX;
+    private float mOffsetY;
+
+    // Cache
+    private final ControlTimedPoints mStartControlPointsCached = new ControlTimedPoints();
+    private final ControlTimedPoints mEndControlPointsCached = new ControlTimedPoints();
+    private final Bezier mBezierCached = new Bezier();
+    private final Bezier mScaledBezierCached = new Bezier();
+    private final TimedPoint[] mScaledPointsCached = {
+            new TimedPoint(), new TimedPoint(), new TimedPoint(), new TimedPoint()
+    };
+    private final TimedPoint mTailFromCached = new TimedPoint();
+    private final TimedPoint mTailToCached = new TimedPoint();
+
+    /** Values written by {@link #predictTail(StrokeStore, long, float, float[])}. */
+    public static final int TAIL_SIZE = 7;
+
+    /**
+     * Sets the pen, it applies to the following segments.
+     *
+     * @param minWidth the minimum stroke width in pixel.
+     * @param maxWidth the maximum stroke width in pixel.
+     * @param velocityFilterWeight weight of the current velocity against the previous one.
+     */
+    public StrokeEngine setPen(float minWidth, float maxWidth, float velocityFilterWeight) {
+        mMinWidth = minWidth;
+        mMaxWidth = maxWidth;
+        mVelocityFilterWeight = velocityFilterWeight;
+        return this;
+    }
+
+    /**
+     * Scales and moves the emitted segments and their widths. The widths are computed on the
+     * untransformed samples, so the output looks the same at every scale.
+     */
+    public StrokeEngine setTransform(float scale, float offsetX, float offsetY) {
+        mScale = scale;
+        mOffsetX = offsetX;
+        mOffsetY = offsetY;
+        return this;
+    }
+
+    /**
+     * Scales the segments of strokes recorded at the source size to fit the given size,
+     * keeping the aspect ratio and centered. An unknown source size is not scaled.
+     */
+    public StrokeEngine fit(int sourceWidth, int sourceHeight, int width, int height) {
+        if (sourceWidth <= 0 || sourceHeight <= 0) {
+            return setTransform(1f, 0f, 0f);
+        }
+        float scale = Math.min(width / (float) sourceWidth, height / (float) sourceHeight);
+        return setTransform(scale,
+                (width - sourceWidth * scale) / 2,
+                (height - sourceHeight * scale) / 2);
+    }
+
+    /**
+     * Forgets the velocity and width of the previous segments, as when the pad is cleared.
+     */
+    public void reset() {
+        mLastVelocity = 0;
+        // Integer division of the pixel widths, as the pad always computed it
+        mLastWidth = (float) Math.floor((mMinWidth + mMaxWidth) / 2);
+    }
+
+    /**
+     * Adds a sample to the current stroke of the store and emits the segment it completes.
+     */
+    public void addPoint(StrokeStore store, float x, float y, long timestamp, CurveListener listener) {
+        int last = store.add(x, y, timestamp);
+
+        int pointsCount = last + 1 - store.currentStrokeStart();
+        if (pointsCount > 3) {
+            // Only the last 4 points of the stroke are needed to smooth the next segment.
+            addSegment(store, last - 3, listener);
+        } else if (pointsCount == 1) {
+            // To reduce the initial lag make it work with 3 points
+            // by duplicating the first point
+            store.add(x, y, timestamp);
+        }
+    }
+
+    /**
+     * Resets the engine and emits the segments of every stroke of the store.
+     */
+    public void render(StrokeStore store, CurveListener listener) {
+        reset();
+        for (int s = 0; s < store.strokeCount(); s++) {
+            renderStroke(store, s, listener);
+        }
+    }
+
+    /**
+     * Emits the segments of a single stroke of the store, continuing from the velocity and
+     * width the engine is at.
+     */
+    public void renderStroke(StrokeStore store, int stroke, CurveListener listener) {
+        int end = store.strokeEnd(stroke);
+        for (int first = store.strokeStart(stroke); first + 3 < end; first++) {
+            addSegment(store, first, listener);
+        }
+    }
+
+    /**
+     * Saves the velocity and width the next segment continues from.
+     *
+     * @param out receives them, at least 2 values.
+     * @return out.
+     */
+    public float[] saveState(float[] out) {
+        out[0] = mLastVelocity;
+        out[1] = mLastWidth;
+        return out;
+    }
+
+    /**
+     * Continues from the velocity and width of {@link #saveState(float[])}, e.g. to smooth a
+     * stroke again.
+     */
+    public void restoreState(float[] state) {
+        mLastVelocity = state[0];
+        mLastWidth = state[1];
+    }
+
+    /**
+     * Smooths and emits the segment between the second and third of four consecutive samples.
+     *
+     * @param first index of the first of the four samples in the store.
+     */
+    public void addSegment(StrokeStore store, int first, CurveListener listener) {
+        ControlTimedPoints tmp = calculateCurveControlPoints(store, first, first + 1, first + 2, mStartControlPointsCached);
+        TimedPoint c2 = tmp.c2;
+
+        tmp = calculateCurveControlPoints(store, first + 1, first + 2, first + 3, mEndControlPointsCached);
+        TimedPoint c3 = tmp.c1;
+
+        Bezier curve = mBezierCached.set(store, first + 1, c2, c3, first + 2);
+
+        TimedPoint startPoint = curve.startPoint;
+        TimedPoint endPoint = curve.endPoint;
+
+        // 0 when no time passed, no NaN to check for
+        float velocity = endPoint.velocityFrom(startPoint);
+
+        velocity = mVelocityFilterWeight * velocity
+                + (1 - mVelocityFilterWeight) * mLastVelocity;
+
+        // The new width is a function of the velocity. Higher velocities
+        // correspond to thinner strokes.
+        float newWidth = strokeWidth(velocity);
+
+        // The Bezier's width starts out as last curve's final width, and
+        // gradually changes to the stroke width just calculated. The new
+        // width calculation is based on the velocity between the Bezier's
+        // start and end points.
+        if (mScale == 1f && mOffsetX == 0f && mOffsetY == 0f) {
+            listener.onCurve(curve, mLastWidth, newWidth);
+        } else {
+            listener.onCurve(transform(curve), mLastWidth * mScale, newWidth * mScale);
+        }
+
+        mLastVelocity = velocity;
+        mLastWidth = newWidth;
+    }
+
+    /**
+     * Computes a provisional tail for the current stroke, covering the samples not smoothed yet
+     * and the way the pen is expected to go on within the given time. It leads from the end of
+     * the last emitted segment over the newest sample to the predicted point, which continues
+     * the direction of the newest samples at their speed.
+     *
+     * @param store the store the current stroke is added to.
+     * @param ahead how far to look ahead, in nanoseconds.
+     * @param maxDistance upper bound of the predicted way in pixel, against overshooting.
+     * @param out receives the start x, y, the newest sample x, y, the predicted x, y and the
+     *            width, see {@link #TAIL_SIZE}.
+     * @return false if the current stroke has no sample.
+     */
+    public boolean predictTail(StrokeStore store, long ahead, float maxDistance, float[] out) {
+        int start = store.currentStrokeStart();
+        int last = store.size() - 1;
+        if (start < 0 || last < start) {
+            return false;
+        }
+        // The last emitted segment ends at the sample before the newest one
+        int from = last - start + 1 > 3 ? last - 1 : start;
+        out[0] = store.getX(from);
+        out[1] = store.getY(from);
+        out[2] = store.getX(last);
+        out[3] = store.getY(last);
+
+        // Speed and direction over the newest samples
+        TimedPoint newest = store.get(last, mTailToCached);
+        TimedPoint earlier = store.get(Math.max(start, last - 2), mTailFromCached);
+        float distance = newest.distanceTo(earlier);
+        out[4] = newest.x;
+        out[5] = newest.y;
+        if (distance > 0 && newest.timestamp > earlier.timestamp) {
+            // The velocity is per millisecond
+            float way = Math.min(newest.velocityFrom(earlier) * (ahead / 1000000f), maxDistance);
+            out[4] += (newest.x - earlier.x) / distance * way;
+            out[5] += (newest.y - earlier.y) / distance * way;
+        }
+        out[6] = mLastWidth;
+        return true;
+    }
+
+    private Bezier transform(Bezier curve) {
+        return mScaledBezierCached.set(
+                transform(curve.startPoint, mScaledPointsCached[0]),
+                transform(curve.control1, mScaledPointsCached[1]),
+                transform(curve.control2, mScaledPointsCached[2]),
+                transform(curve.endPoint, mScaledPointsCached[3]));
+    }
+
+    private TimedPoint transform(TimedPoint point, TimedPoint out) {
+        return out.set(point.x * mScale + mOffsetX, point.y * mScale + mOffsetY, point.timestamp);
+    }
+
+    /**
+     * Calculates the control points around the middle sample of three consecutive samples.
+     *
+     * @param i1 index of the first sample in the stroke store.
+     * @param i2 index of the second sample in the stroke store.
+     * @param i3 index of the third sample in the stroke store.
+     * @param out reusable holder for the result.
+     */
+    private ControlTimedPoints calculateCurveControlPoints(StrokeStore store, int i1, int i2, int i3, ControlTimedPoints out) {
+        float s1x = store.getX(i1), s1y = store.getY(i1);
+        float s2x = store.getX(i2), s2y = store.getY(i2);
+        float s3x = store.getX(i3), s3y = store.getY(i3);
+
+        float dx1 = s1x - s2x;
+        float dy1 = s1y - s2y;
+        float dx2 = s2x - s3x;
+        float dy2 = s2y - s3y;
+
+        float m1X = (s1x + s2x) / 2.0f;
+        float m1Y = (s1y + s2y) / 2.0f;
+        float m2X = (s2x + s3x) / 2.0f;
+        float m2Y = (s2y + s3y) / 2.0f;
+
+        float l1 = (float) Math.sqrt(dx1 * dx1 + dy1 * dy1);
+        float l2 = (float) Math.sqrt(dx2 * dx2 + dy2 * dy2);
+
+        float dxm = (m1X - m2X);
+        float dym = (m1Y - m2Y);
+        float k = l2 / (l1 + l2);
+        if (Float.isNaN(k)) k = 0.0f;
+        float cmX = m2X + dxm * k;
+        float cmY = m2Y + dym * k;
+
+        float tx = s2x - cmX;
+        float ty = s2y - cmY;
+
+        return out.set(m1X + tx, m1Y + ty, m2X + tx, m2Y + ty, store.getTime(i2));
+    }
+
+    private float strokeWidth(float velocity) {
+        return Math.max(mMaxWidth / (velocity + 1), mMinWidth);
+    }
+}
@@ -0,0 +1,64 @@
+package com.williamww.silkysignature.utils;
+
+/**
+ * The sample ingestion of the pad: samples pass the {@link SampleFilter}, are added to the
+ * current stroke of the {@link StrokeStore} and smoothed by the {@link StrokeEngine}.
+ *
+ * The pad feeds it from its touch events and {@link SampleTrace} from recorded ones, so a
+ * replayed trace produces the same strokes and segments as it did on the pad.
+ */
+public class StrokeInput {
+
+    private final StrokeStore mStore;
+    private final SampleFilter mFilter;
+    private final StrokeEngine mEngine;
+
+    public StrokeInput(StrokeStore store, SampleFilter filter, StrokeEngine engine) {
+        mStore = store;
+        mFilter = filter;
+        mEngine = engine;
+    }
+
+    public StrokeStore getStore() {
+        return mStore;
+    }
+
+    public SampleFilter getFilter() {
+        return mFilter;
+    }
+
+    public StrokeEngine getEngine() {
+        return mEngine;
+    }
+
+    /**
+     * Starts a new stroke, as the pen touches down.
+     */
+    public void startStroke() {
+        mStore.startStroke();
+    }
+
+    /**
+     * Adds a sample to the current stroke, unless the filter drops it.
+     *
+     * @param time timestamp in nanoseconds.
+     * @param listener receives the segment the sample completes.
+     * @return whether the sample was added.
+     */
+    public boolean add(float x, float y, long time, StrokeEngine.CurveListener listener) {
+        if (!mFilter.accept(mStore, x, y, time)) {
+            return false;
+        }
+        mEngine.addPoint(mStore, x, y, time, listener);
+        return true;
+    }
+
+    /**
+     * Finishes the current stroke, as the pen is lifted.
+     *
+     * @return the number of samples the simplification removed.
+     */
+    public int endStroke() {
+        return mFilter.simplify(mStore);
+    }
+}
@@ -0,0 +1,130 @@
+package com.williamww.silkysignature.utils;
+
+import java.util.Arrays;
+
+/**
+ * Tessellates a variable width Bezier segment into its left and right outline.
+ *
+ * The width grows from the start width to the end width the same way the dot stamping
+ * renderer does, so both renderers produce the same shape. The arrays are reused between
+ * segments.
+ */
+public class StrokeOutline {
+
+    private float[] mCenter = new float[64];
+    private float[] mLeft = new float[64];
+    private float[] mRight = new float[64];
+    private float[] mWidth = new float[32];
+    private int mCount;
+    private final BezierStepper mStepper = new BezierStepper();
+
+    /**
+     * Samples the curve in the given number of steps.
+     *
+     * @param curve the segment.
+     * @param startWidth the stroke width at the start of the segment.
+     * @param endWidth the stroke width at the end of the segment.
+     * @param steps number of steps, the outline has {@code steps + 1} samples per side.
+     * @return this outline.
+     */
+    public StrokeOutline set(Bezier curve, float startWidth, float endWidth, int steps) {
+        if (steps < 1) {
+            steps = 1;
+        }
+        ensureCapacity(steps + 1);
+        mCount = steps + 1;
+
+        final float widthDelta = endWidth - startWidth;
+        // Points and derivatives by forward differencing
+        final BezierStepper stepper = mStepper.start(curve, steps);
+
+        for (int i = 0; i <= steps; i++, stepper.next()) {
+            float t = ((float) i) / steps;
+            float ttt = t * t * t;
+
+            float x = stepper.x;
+            float y = stepper.y;
+
+            // Tangent from the derivative of the curve
+            float dx = stepper.dx;
+            float dy = stepper.dy;
+            if (i == steps) {
+                // Exactly on the end, so the round cap and the next segment meet the outline
+                x = curve.endPoint.x;
+                y = curve.endPoint.y;
+                dx = 3 * (curve.endPoint.x - curve.control2.x);
+                dy = 3 * (curve.endPoint.y - curve.control2.y);
+            }
+            float length = (float) Math.sqrt(dx * dx + dy * dy);
+            if (length == 0) {
+                // Degenerated control points, fall back to the chord
+                dx = curve.endPoint.x - curve.startPoint.x;
+                dy = curve.endPoint.y - curve.startPoint.y;
+                length = (float) Math.sqrt(dx * dx + dy * dy);
+            }
+
+            float width = startWidth + ttt * widthDelta;
+            float nx = 0, ny = 0;
+            if (length > 0) {
+                float scale = width / 2 / length;
+                nx = -dy * scale;
+                ny = dx * scale;
+            }
+
+            int p = i * 2;
+            mCenter[p] = x;
+            mCenter[p + 1] = y;
+            mLeft[p] = x + nx;
+            mLeft[p + 1] = y + ny;
+            mRight[p] = x - nx;
+            mRight[p + 1] = y - ny;
+            mWidth[i] = width;
+        }
+        return this;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public float getCenterX(int i) {
+        return mCenter[i * 2];
+    }
+
+    public float getCenterY(int i) {
+        return mCenter[i * 2 + 1];
+    }
+
+    public float getLeftX(int i) {
+        return mLeft[i * 2];
+    }
+
+    public float getLeftY(int i) {
+        return mLeft[i * 2 + 1];
+    }
+
+    public float getRightX(int i) {
+        return mRight[i * 2];
+    }
+
+    public float getRightY(int i) {
+        return mRight[i * 2 + 1];
+    }
+
+    /**
+     * @return the full stroke width at the given sample.
+     */
+    public float getWidth(int i) {
+        return mWidth[i];
+    }
+
+    private void ensureCapacity(int count) {
+        if (mWidth.length < count) {
+            int capacity = Math.max(count, mWidth.length * 2);
+            mCenter = Arrays.copyOf(mCenter, capacity * 2);
+            mLeft = Arrays.copyOf(mLeft, capacity * 2);
+            mRight = Arrays.copyOf(mRight, capacity * 2);
+            mWidth = Arrays.copyOf(mWidth, capacity);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.williamww.silkysignature.utils;
+
+import java.util.Arrays;
+
+/**
+ * Growable primitive store holding every ink sample of a pad.
+ *
+ * Samples are kept in parallel {@code x}, {@code y} and {@code time} arrays and strokes are
+ * described by the index of their first sample, so adding a point never allocates once the
+ * arrays have grown to the size of a typical signature.
+ */
+public class StrokeStore {
+
+    private static final int INITIAL_POINT_CAPACITY = 256;
+    private static final int INITIAL_STROKE_CAPACITY = 16;
+
+    private float[] mX = new float[INITIAL_POINT_CAPACITY];
+    private float[] mY = new float[INITIAL_POINT_CAPACITY];
+    private long[] mTime = new long[INITIAL_POINT_CAPACITY];
+    private int mSize;
+
+    private int[] mStrokeStarts = new int[INITIAL_STROKE_CAPACITY];
+    private int mStrokeCount;
+
+    /**
+     * Removes all samples and strokes, keeping the allocated capacity.
+     */
+    public void clear() {
+        mSize = 0;
+        mStrokeCount = 0;
+    }
+
+    /**
+     * @return an independent copy of the samples and strokes, e.g. to render them on another
+     * thread while this store keeps growing.
+     */
+    public StrokeStore copy() {
+        StrokeStore copy = new StrokeStore();
+        copy.mX = Arrays.copyOf(mX, Math.max(mSize, 1));
+        copy.mY = Arrays.copyOf(mY, Math.max(mSize, 1));
+        copy.mTime = Arrays.copyOf(mTime, Math.max(mSize, 1));
+        copy.mSize = mSize;
+        copy.mStrokeStarts = Arrays.copyOf(mStrokeStarts, Math.max(mStrokeCount, 1));
+        copy.mStrokeCount = mStrokeCount;
+        return copy;
+    }
+
+    /**
+     * Starts a new stroke. Following samples are added to it.
+     * An empty current stroke is reused instead of leaving an empty stroke behind.
+     */
+    public void startStroke() {
+        if (mStrokeCount > 0 && mStrokeStarts[mStrokeCount - 1] == mSize) {
+            return;
+        }
+        if (mStrokeCount == mStrokeStarts.length) {
+            mStrokeStarts = Arrays.copyOf(mStrokeStarts, mStrokeCount * 2);
+        }
+        mStrokeStarts[mStrokeCount++] = mSize;
+    }
+
+    /**
+     * Adds a sample to the current stroke, starting one if none exists yet.
+     *
+     * @param time the timestamp in nanoseconds.
+     * @return the index of the new sample.
+     */
+    public int add(float x, float y, long time) {
+        if (mStrokeCount == 0) {
+            startStroke();
+        }
+        if (mSize == mX.length) {
+            int capacity = mSize * 2;
+            mX = Arrays.copyOf(mX, capacity);
+            mY = Arrays.copyOf(mY, capacity);
+            mTime = Arrays.copyOf(mTime, capacity);
+        }
+        mX[mSize] = x;
+        mY[mSize] = y;
+        mTime[mSize] = time;
+        return mSize++;
+    }
+
+    /**
+     * Keeps only the flagged samples of the current stroke, in their order.
+     *
+     * @param keep a flag per sample of the current stroke, indexed from its first sample.
+     * @return the number of removed samples.
+     */
+    public int retainInCurrentStroke(boolean[] keep) {
+        int start = currentStrokeStart();
+        int write = start;
+        for (int read = start; read < mSize; read++) {
+            if (keep[read - start]) {
+                mX[write] = mX[read];
+                mY[write] = mY[read];
+                mTime[write] = mTime[read];
+                write++;
+            }
+        }
+        int removed = mSize - write;
+        mSize = write;
+        return removed;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public int strokeCount() {
+        return mStrokeCount;
+    }
+
+    /**
+     * @return the index of the first sample of the given stroke.
+     */
+    public int strokeStart(int stroke) {
+        return mStrokeStarts[stroke];
+    }
+
+    /**
+     * @return the index after the last sample of the given stroke.
+     */
+    public int strokeEnd(int stroke) {
+        return stroke + 1 < mStrokeCount ? mStrokeStarts[stroke + 1] : mSize;
+    }
+
+    /**
+     * @return the index of the first sample of the stroke currently being drawn.
+     */
+    public int currentStrokeStart() {
+        return mStrokeCount == 0 ? mSize : mStrokeStarts[mStrokeCount - 1];
+    }
+
+    public float getX(int index) {
+        return mX[index];
+    }
+
+    public float getY(int index) {
+        return mY[index];
+    }
+
+    public long getTime(int index) {
+        return mTime[index];
+    }
+
+    /**
+     * Copies the sample at the given index into a reusable point.
+     *
+     * @return the given point.
+     */
+    public TimedPoint get(int index, TimedPoint point) {
+        return point.set(mX[index], mY[index], mTime[index]);
+    }
+}
@@ -1,74 +1,184 @@
 package com.williamww.silkysignature.utils;
 
+import java.io.IOException;
+import java.io.Writer;
+
 public class SvgBuilder {
 
+    private static final int WRITE_CHUNK_SIZE = 4096;
+
     private final StringBuilder mSvgPathsBuilder = new StringBuilder();
-    private SvgPathBuilder mCurrentPathBuilder = null;
+    // Reused for every path, only the finished paths are kept as text
+    private final SvgPathBuilder mCurrentPathBuilder = new SvgPathBuilder();
+    private boolean mPathStarted = false;
+    // Length of the finished paths at the last mark
+    private int mMark;
 
     public SvgBuilder() {
     }
 
     public void clear() {
         mSvgPathsBuilder.setLength(0);
-        mCurrentPathBuilder = null;
+        mPathStarted = false;
+        mMark = 0;
     }
 
-    public String build(final int width, final int height) {
+    /**
+     * Finishes the current path, so the curves appended from here on can be dropped again
+     * with {@link #rewind()}.
+     */
+    public void mark() {
         if (isPathStarted()) {
             appendCurrentPath();
+            mPathStarted = false;
         }
-        return (new StringBuilder())
-                .append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n")
+        mMark = mSvgPathsBuilder.length();
+    }
+
+    /**
+     * Drops the curves appended since the last {@link #mark()}.
+     */
+    public void rewind() {
+        mSvgPathsBuilder.setLength(mMark);
+        mPathStarted = false;
+    }
+
+    public String build(final int width, final int height) {
+        final StringBuilder stringBuilder = new StringBuilder(mSvgPathsBuilder.length() + 512);
+        try {
+            write(stringBuilder, width, height);
+        } catch (IOException e) {
+            // A StringBuilder never throws
+            throw new IllegalStateException(e);
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Streams the SVG document to the given sink without building it in memory first.
+     * The path being drawn is written as well, but stays open for following curves.
+     *
+     * @param out the sink, e.g. a {@link Writer} on a file or a request body.
+     * @param width width of the document.
+     * @param height height of the document.
+     * @throws IOException if the sink fails.
+     */
+    public void write(final Appendable out, final int width, final int height) throws IOException {
+        write(out, width, height, 0, 0, width, height, 0);
+    }
+
+    /**
+     * Streams the SVG document showing the given area of the drawing, scaled to fit the
+     * document size and centered.
+     *
+     * @param viewLeft left edge of the shown area in drawing coordinates.
+     * @param viewTop top edge of the shown area in drawing coordinates.
+     * @param viewWidth width of the shown area.
+     * @param viewHeight height of the shown area.
+     * @param backgroundColor ARGB color filling the shown area, fully transparent for none.
+     * @throws IOException if the sink fails.
+     */
+    public void write(final Appendable out, final int width, final int height,
+                      final int viewLeft, final int viewTop, final int viewWidth, final int viewHeight,
+                      final int backgroundColor) throws IOException {
+        out.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n")
                 .append("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.2\" baseProfile=\"tiny\" ")
                 .append("height=\"")
-                .append(height)
+                .append(String.valueOf(height))
                 .append("\" ")
                 .append("width=\"")
-                .append(width)
-                .append("\">")
-                .append("<g ")
+                .append(String.valueOf(width))
+                .append("\"");
+        if (viewLeft != 0 || viewTop != 0 || viewWidth != width || viewHeight != height) {
+            out.append(" viewBox=\"")
+                    .append(String.valueOf(viewLeft)).append(' ')
+                    .append(String.valueOf(viewTop)).append(' ')
+                    .append(String.valueOf(viewWidth)).append(' ')
+                    .append(String.valueOf(viewHeight))
+                    .append("\"");
+        }
+        out.append(">");
+        final int alpha = backgroundColor >>> 24;
+        if (alpha != 0) {
+            out.append("<rect ")
+                    .append("x=\"").append(String.valueOf(viewLeft)).append("\" ")
+                    .append("y=\"").append(String.valueOf(viewTop)).append("\" ")
+                    .append("width=\"").append(String.valueOf(viewWidth)).append("\" ")
+                    .append("height=\"").append(String.valueOf(viewHeight)).append("\" ")
+                    .append("fill=\"#").append(String.format("%06x", backgroundColor & 0xFFFFFF)).append("\"");
+            if (alpha != 0xFF) {
+                out.append(" fill-opacity=\"").append(String.valueOf(alpha / 255f)).append("\"");
+            }
+            out.append("/>");
+        }
+        out.append("<g ")
                 .append("stroke-linejoin=\"round\" ")
                 .append("stroke-linecap=\"round\" ")
                 .append("fill=\"none\" ")
                 .append("stroke=\"black\"")
-                .append(">")
-                .append(mSvgPathsBuilder)
-                .append("</g>")
-                .append("</svg>")
-                .toString();
+                .append(">");
+        writeChunked(out, mSvgPathsBuilder);
+        if (isPathStarted()) {
+            mCurrentPathBuilder.appendTo(out);
+        }
+        out.append("</g>")
+                .append("</svg>");
+    }
+
+    /**
+     * Writers turn every appended CharSequence into a String, so large path data is
+     * handed to them through a small buffer instead.
+     */
+    private static void writeChunked(final Appendable out, final StringBuilder source) throws IOException {
+        if (!(out instanceof Writer)) {
+            out.append(source);
+            return;
+        }
+        final Writer writer = (Writer) out;
+        final int length = source.length();
+        final char[] buffer = new char[Math.min(WRITE_CHUNK_SIZE, Math.max(length, 1))];
+        for (int start = 0; start < length; start += buffer.length) {
+            final int end = Math.min(length, start + buffer.length);
+            source.getChars(start, end, buffer, 0);
+            writer.write(buffer, 0, end - start);
+        }
     }
 
     public SvgBuilder append(final Bezier curve, final float strokeWidth) {
-        final Integer roundedStrokeWidth = Math.round(strokeWidth);
-        final SvgPoint curveStartSvgPoint = new SvgPoint(curve.startPoint);
-        final SvgPoint curveControlSvgPoint1 = new SvgPoint(curve.control1);
-        final SvgPoint curveControlSvgPoint2 = new SvgPoint(curve.control2);
-        final SvgPoint curveEndSvgPoint = new SvgPoint(curve.endPoint);
+        // one optimisation is to get rid of decimals as they are mostly non-significant in the
+        // produced SVG image
+        final int roundedStrokeWidth = Math.round(strokeWidth);
+        final int startX = Math.round(curve.startPoint.x);
+        final int startY = Math.round(curve.startPoint.y);
 
         if (!isPathStarted()) {
-            startNewPath(roundedStrokeWidth, curveStartSvgPoint);
+            startNewPath(roundedStrokeWidth, startX, startY);
         }
 
-        if (!curveStartSvgPoint.equals(mCurrentPathBuilder.getLastPoint())
-                || !roundedStrokeWidth.equals(mCurrentPathBuilder.getStrokeWidth())) {
+        if (!mCurrentPathBuilder.isLastPoint(startX, startY)
+                || roundedStrokeWidth != mCurrentPathBuilder.getStrokeWidth()) {
             appendCurrentPath();
-            startNewPath(roundedStrokeWidth, curveStartSvgPoint);
+            startNewPath(roundedStrokeWidth, startX, startY);
         }
 
-        mCurrentPathBuilder.append(curveControlSvgPoint1, curveControlSvgPoint2, curveEndSvgPoint);
+        mCurrentPathBuilder.append(
+                Math.round(curve.control1.x), Math.round(curve.control1.y),
+                Math.round(curve.control2.x), Math.round(curve.control2.y),
+                Math.round(curve.endPoint.x), Math.round(curve.endPoint.y));
         return this;
     }
 
-    private void startNewPath(Integer roundedStrokeWidth, SvgPoint curveStartSvgPoint) {
-        mCurrentPathBuilder = new SvgPathBuilder(curveStartSvgPoint, roundedStrokeWidth);
+    private void startNewPath(final int roundedStrokeWidth, final int startX, final int startY) {
+        mCurrentPathBuilder.reset(startX, startY, roundedStrokeWidth);
+        mPathStarted = true;
     }
 
     private void appendCurrentPath() {
-        mSvgPathsBuilder.append(mCurrentPathBuilder);
+        mCurrentPathBuilder.appendTo(mSvgPathsBuilder);
     }
 
     private boolean isPathStarted() {
-        return mCurrentPathBuilder != null;
+        return mPathStarted;
     }
 
 }
@@ -1,79 +1,183 @@
 package com.williamww.silkysignature.utils;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 
 /**
  * Build a SVG path as a string.
  *
+ * Coordinates are kept as ints and their digits are written straight into a reusable char
+ * buffer, so appending a curve does not allocate. One builder can be reused for every path
+ * of a document through {@link #reset(int, int, int)}.
+ *
  * https://www.w3.org/TR/SVGTiny12/paths.html
  */
 public class SvgPathBuilder {
 
-    public static final Character SVG_RELATIVE_CUBIC_BEZIER_CURVE = 'c';
-    public static final Character SVG_MOVE = 'M';
-    private final StringBuilder mStringBuilder;
-    private final Integer mStrokeWidth;
-    private final SvgPoint mStartPoint;
-    private SvgPoint mLastPoint;
+    public static final char SVG_RELATIVE_CUBIC_BEZIER_CURVE = 'c';
+    public static final char SVG_MOVE = 'M';
 
-    public SvgPathBuilder(final SvgPoint startPoint, final Integer strokeWidth) {
-        mStrokeWidth = strokeWidth;
-        mStartPoint = startPoint;
-        mLastPoint = startPoint;
-        mStringBuilder = new StringBuilder();
-        mStringBuilder.append(SVG_RELATIVE_CUBIC_BEZIER_CURVE);
+    // Longest int is 11 chars, a curve is 6 of them plus 6 separators
+    private static final int MAX_CURVE_LENGTH = 6 * 11 + 6;
+    private static final char[] PATH_START = "<path stroke-width=\"".toCharArray();
+    private static final char[] PATH_DATA = "\" d=\"".toCharArray();
+    private static final char[] PATH_END = "\"/>".toCharArray();
+
+    private char[] mData = new char[256];
+    private int mLength;
+    // Holds the element start up to the move command
+    private final char[] mHead = new char[PATH_START.length + PATH_DATA.length + 3 * 11 + 2];
+    private int mStrokeWidth;
+    private int mStartX;
+    private int mStartY;
+    private int mLastX;
+    private int mLastY;
+
+    public SvgPathBuilder() {
+    }
 
+    public SvgPathBuilder(final int startX, final int startY, final int strokeWidth) {
+        reset(startX, startY, strokeWidth);
     }
 
-    public final Integer getStrokeWidth() {
+    /**
+     * Starts a new path, keeping the allocated buffer.
+     */
+    public SvgPathBuilder reset(final int startX, final int startY, final int strokeWidth) {
+        mStrokeWidth = strokeWidth;
+        mStartX = startX;
+        mStartY = startY;
+        mLastX = startX;
+        mLastY = startY;
+        mLength = 0;
+        mData[mLength++] = SVG_RELATIVE_CUBIC_BEZIER_CURVE;
+        return this;
+    }
+
+    public final int getStrokeWidth() {
         return mStrokeWidth;
     }
 
-    public final SvgPoint getLastPoint() {
-        return mLastPoint;
+    public final int getLastX() {
+        return mLastX;
+    }
+
+    public final int getLastY() {
+        return mLastY;
     }
 
-    public SvgPathBuilder append(final SvgPoint controlPoint1, final SvgPoint controlPoint2, final SvgPoint endPoint) {
-        mStringBuilder.append(makeRelativeCubicBezierCurve(controlPoint1, controlPoint2, endPoint));
-        mLastPoint = endPoint;
+    public final boolean isLastPoint(final int x, final int y) {
+        return mLastX == x && mLastY == y;
+    }
+
+    /**
+     * Appends a cubic curve from the last point, all coordinates are absolute.
+     */
+    public SvgPathBuilder append(final int control1X, final int control1Y,
+                                 final int control2X, final int control2Y,
+                                 final int endX, final int endY) {
+        final int c1x = control1X - mLastX;
+        final int c1y = control1Y - mLastY;
+        final int c2x = control2X - mLastX;
+        final int c2y = control2Y - mLastY;
+        final int ex = endX - mLastX;
+        final int ey = endY - mLastY;
+
+        // discard zero curve
+        if ((c1x | c1y | c2x | c2y | ex | ey) == 0) {
+            return this;
+        }
+
+        if (mLength + MAX_CURVE_LENGTH > mData.length) {
+            mData = Arrays.copyOf(mData, Math.max(mData.length * 2, mLength + MAX_CURVE_LENGTH));
+        }
+        int pos = mLength;
+        pos = writeCoordinates(mData, pos, c1x, c1y);
+        mData[pos++] = ' ';
+        pos = writeCoordinates(mData, pos, c2x, c2y);
+        mData[pos++] = ' ';
+        pos = writeCoordinates(mData, pos, ex, ey);
+        mData[pos++] = ' ';
+        mLength = pos;
+
+        mLastX = endX;
+        mLastY = endY;
         return this;
     }
 
     @Override
     public String toString() {
-        return (new StringBuilder())
-                .append("<path ")
-                .append("stroke-width=\"")
-                .append(mStrokeWidth)
-                .append("\" ")
-                .append("d=\"")
-                .append(SVG_MOVE)
-                .append(mStartPoint)
-                .append(mStringBuilder)
-                .append("\"/>")
-                .toString();
+        final StringBuilder stringBuilder = new StringBuilder(mLength + mHead.length + PATH_END.length);
+        appendTo(stringBuilder);
+        return stringBuilder.toString();
     }
 
-    private String makeRelativeCubicBezierCurve(final SvgPoint controlPoint1, final SvgPoint controlPoint2, final SvgPoint endPoint) {
-        final String sControlPoint1 = controlPoint1.toRelativeCoordinates(mLastPoint);
-        final String sControlPoint2 = controlPoint2.toRelativeCoordinates(mLastPoint);
-        final String sEndPoint = endPoint.toRelativeCoordinates(mLastPoint);
+    /**
+     * Appends the path element to the given builder without intermediate strings.
+     */
+    public void appendTo(final StringBuilder out) {
+        out.append(mHead, 0, writeHead());
+        out.append(mData, 0, mLength);
+        out.append(PATH_END);
+    }
 
-        final StringBuilder sb = new StringBuilder();
+    /**
+     * Appends the path element to the given sink.
+     */
+    public void appendTo(final Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            appendTo((StringBuilder) out);
+        } else if (out instanceof Writer) {
+            final Writer writer = (Writer) out;
+            writer.write(mHead, 0, writeHead());
+            writer.write(mData, 0, mLength);
+            writer.write(PATH_END);
+        } else {
+            out.append(CharBuffer.wrap(mHead, 0, writeHead()))
+                    .append(CharBuffer.wrap(mData, 0, mLength))
+                    .append(CharBuffer.wrap(PATH_END));
+        }
+    }
 
-        sb.append(sControlPoint1);
-        sb.append(" ");
-        sb.append(sControlPoint2);
-        sb.append(" ");
+    private int writeHead() {
+        int pos = 0;
+        System.arraycopy(PATH_START, 0, mHead, pos, PATH_START.length);
+        pos += PATH_START.length;
+        pos = writeInt(mHead, pos, mStrokeWidth);
+        System.arraycopy(PATH_DATA, 0, mHead, pos, PATH_DATA.length);
+        pos += PATH_DATA.length;
+        mHead[pos++] = SVG_MOVE;
+        return writeCoordinates(mHead, pos, mStartX, mStartY);
+    }
 
-        sb.append(sEndPoint);
-        sb.append(" ");
+    private static int writeCoordinates(final char[] buffer, int pos, final int x, final int y) {
+        pos = writeInt(buffer, pos, x);
+        buffer[pos++] = ',';
+        return writeInt(buffer, pos, y);
+    }
 
-        // discard zero curve
-        final String svg = sb.toString();
-        if ("c0 0 0 0 0 0".equals(svg)) {
-            return "";
-        } else {
-            return svg;
+    /**
+     * Writes the decimal digits of the value at the given position.
+     *
+     * @return the position after the last digit.
+     */
+    static int writeInt(final char[] buffer, int pos, final int value) {
+        long remaining = value;
+        if (remaining < 0) {
+            buffer[pos++] = '-';
+            remaining = -remaining;
+        }
+        int digits = 1;
+        for (long limit = 10; limit <= remaining; limit *= 10) {
+            digits++;
+        }
+        final int end = pos + digits;
+        for (int i = end - 1; i >= pos; i--) {
+            buffer[i] = (char) ('0' + remaining % 10);
+            remaining /= 10;
         }
+        return end;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,52 @@
+package com.williamww.silkysignature.utils;
+
+import java.io.IOException;
+
+/**
+ * Renders stored strokes as SVG document without a pad or any Android class, e.g. on a server
+ * or in plain JVM tests. The strokes are fitted into the requested size like
+ * {@link StrokeEngine#fit(int, int, int, int)} does. An instance is not thread-safe, use one
+ * per thread.
+ */
+public class SvgRenderer {
+
+    private final StrokeCodec.Header mHeader;
+    private final StrokeStore mStrokes;
+    private final StrokeEngine mEngine = new StrokeEngine();
+
+    /**
+     * @param header the pad size and pen the strokes were recorded with.
+     * @param strokes the strokes.
+     */
+    public SvgRenderer(StrokeCodec.Header header, StrokeStore strokes) {
+        mHeader = header;
+        mStrokes = strokes;
+        mEngine.setPen(header.minWidth, header.maxWidth, header.velocityFilterWeight);
+    }
+
+    /**
+     * Renders the strokes as SVG document of the given size.
+     */
+    public String render(int width, int height) {
+        return build(width, height).build(width, height);
+    }
+
+    /**
+     * Streams the strokes as SVG document of the given size to the given sink.
+     */
+    public void write(Appendable out, int width, int height) throws IOException {
+        build(width, height).write(out, width, height);
+    }
+
+    private SvgBuilder build(int width, int height) {
+        final SvgBuilder svgBuilder = new SvgBuilder();
+        mEngine.fit(mHeader.width, mHeader.height, width, height);
+        mEngine.render(mStrokes, new StrokeEngine.CurveListener() {
+            @Override
+            public void onCurve(Bezier curve, float startWidth, float endWidth) {
+                svgBuilder.append(curve, (startWidth + endWidth) / 2);
+            }
+        });
+        return svgBuilder;
+    }
+}
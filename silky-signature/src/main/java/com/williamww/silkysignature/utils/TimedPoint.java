@@ -1,24 +1,46 @@
 package com.williamww.silkysignature.utils;
 
 public class TimedPoint {
+
+    private static final float NANOS_PER_MILLI = 1000000f;
+
     public float x;
     public float y;
+    /** Nanoseconds, only differences between points are meaningful. */
     public long timestamp;
 
     public TimedPoint set(float x, float y) {
+        return set(x, y, System.nanoTime());
+    }
+
+    public TimedPoint set(float x, float y, long timestamp) {
         this.x = x;
         this.y = y;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = timestamp;
         return this;
     }
 
+    /**
+     * @return the velocity in pixel per millisecond, 0 if no time passed between the points.
+     */
     public float velocityFrom(TimedPoint start) {
-        float velocity = distanceTo(start) / (this.timestamp - start.timestamp);
-        if (velocity != velocity) return 0f;
-        return velocity;
+        long elapsed = this.timestamp - start.timestamp;
+        if (elapsed <= 0) {
+            return 0f;
+        }
+        return distanceTo(start) / (elapsed / NANOS_PER_MILLI);
     }
 
     public float distanceTo(TimedPoint point) {
-        return (float) Math.sqrt(Math.pow(point.x - this.x, 2) + Math.pow(point.y - this.y, 2));
+        return (float) Math.sqrt(distanceSquaredTo(point));
+    }
+
+    /**
+     * @return the squared distance, for comparisons without a square root.
+     */
+    public float distanceSquaredTo(TimedPoint point) {
+        float dx = point.x - this.x;
+        float dy = point.y - this.y;
+        return dx * dx + dy * dy;
     }
 }
@@ -0,0 +1,91 @@
+package com.williamww.silkysignature.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Process wide pool of mutable bitmaps, keyed by size and config.
+ *
+ * The ink bitmap of a cleared pad and the temporary bitmaps of the exports are handed back
+ * here instead of being recycled, so repeated sign/clear cycles reuse the same large
+ * allocations. The retained bytes are bounded, the least recently released bitmaps are
+ * recycled first. Safe to use from the export threads.
+ */
+final class BitmapPool {
+
+    // An eighth of the heap, but never more than a handful of full screen bitmaps
+    private static final long DEFAULT_MAX_BYTES = Math.min(Runtime.getRuntime().maxMemory() / 8, 32L * 1024 * 1024);
+
+    private static final BitmapPool sInstance = new BitmapPool(DEFAULT_MAX_BYTES);
+
+    private final LinkedList<Bitmap> mBitmaps = new LinkedList<>();
+    private final long mMaxBytes;
+    private long mBytes;
+
+    private BitmapPool(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    static BitmapPool get() {
+        return sInstance;
+    }
+
+    /**
+     * Returns a transparent bitmap of the given size, reused if one is available.
+     */
+    Bitmap acquire(int width, int height, Bitmap.Config config) {
+        synchronized (this) {
+            // Most recently released first
+            Iterator<Bitmap> iterator = mBitmaps.descendingIterator();
+            while (iterator.hasNext()) {
+                Bitmap bitmap = iterator.next();
+                if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config) {
+                    iterator.remove();
+                    mBytes -= byteCount(bitmap);
+                    bitmap.eraseColor(Color.TRANSPARENT);
+                    return bitmap;
+                }
+            }
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Hands a bitmap back for reuse. It must not be used by the caller afterwards.
+     */
+    void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (!bitmap.isMutable() || byteCount(bitmap) > mMaxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        synchronized (this) {
+            if (mBitmaps.contains(bitmap)) {
+                return;
+            }
+            mBitmaps.addLast(bitmap);
+            mBytes += byteCount(bitmap);
+            trimTo(mMaxBytes);
+        }
+    }
+
+    /**
+     * Recycles the least recently released bitmaps until at most the given bytes are retained.
+     */
+    synchronized void trimTo(long maxBytes) {
+        while (mBytes > maxBytes && !mBitmaps.isEmpty()) {
+            Bitmap bitmap = mBitmaps.removeFirst();
+            mBytes -= byteCount(bitmap);
+            bitmap.recycle();
+        }
+    }
+
+    private static long byteCount(Bitmap bitmap) {
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
@@ -0,0 +1,111 @@
+package com.williamww.silkysignature.views;
+
+import android.support.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Results of the exports of a pad, valid for a single version of its ink.
+ *
+ * Repeated exports of unchanged ink, e.g. a validation, a preview and the final save, get the
+ * same result instead of building and encoding it again. Once the ink changes every result
+ * is dropped. The retained bytes are bounded, the least recently used results are dropped
+ * first. Only immutable results are cached, bitmaps are rendered for every caller, who owns
+ * them. Only used from the main thread.
+ */
+final class ExportCache {
+
+    // Plenty for a few encoded exports and SVG documents, never more than a thirty-second of the heap
+    private static final long DEFAULT_MAX_BYTES = Math.min(Runtime.getRuntime().maxMemory() / 32, 4L * 1024 * 1024);
+
+    private static final class Entry {
+        final Object value;
+        final long bytes;
+
+        Entry(Object value, long bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long mMaxBytes;
+    private long mBytes;
+    private int mVersion;
+
+    ExportCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    ExportCache(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Drops every result if they were cached for another version of the ink.
+     */
+    void validate(int version) {
+        if (version != mVersion) {
+            clear();
+            mVersion = version;
+        }
+    }
+
+    /**
+     * @return the cached result or null.
+     */
+    @Nullable
+    Object get(String key) {
+        Entry entry = mEntries.get(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Caches a String or byte array result, unless it alone exceeds the bounds. The caller must
+     * not change a cached byte array.
+     *
+     * @return the value.
+     */
+    <T> T put(String key, T value) {
+        if (value == null) {
+            return null;
+        }
+        long bytes = byteCount(value);
+        if (bytes > mMaxBytes) {
+            return value;
+        }
+        remove(key);
+        mEntries.put(key, new Entry(value, bytes));
+        mBytes += bytes;
+        // Least recently used first
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mBytes > mMaxBytes && iterator.hasNext()) {
+            mBytes -= iterator.next().getValue().bytes;
+            iterator.remove();
+        }
+        return value;
+    }
+
+    void clear() {
+        mEntries.clear();
+        mBytes = 0;
+    }
+
+    private void remove(String key) {
+        Entry entry = mEntries.remove(key);
+        if (entry != null) {
+            mBytes -= entry.bytes;
+        }
+    }
+
+    private static long byteCount(Object value) {
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        } else if (value instanceof String) {
+            return ((String) value).length() * 2L;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,197 @@
+package com.williamww.silkysignature.views;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.support.annotation.Nullable;
+
+import com.williamww.silkysignature.utils.Bezier;
+import com.williamww.silkysignature.utils.BezierStepper;
+import com.williamww.silkysignature.utils.StrokeOutline;
+
+/**
+ * Draws smoothed segments onto a canvas, shared by the pad and the offline renderer.
+ * Keeps the bounds of the last drawn segment, so callers do not need to track every dot.
+ */
+final class InkRenderer {
+
+    //Distance the outline of the path renderer may deviate from the curve
+    private static final float OUTLINE_TOLERANCE_PX = 0.25f;
+
+    private final Paint mPaint;
+    private int mRenderMode = SignaturePad.RENDER_MODE_POINTS;
+    private final RectF mBounds = new RectF();
+
+    // Cache
+    private final StrokeOutline mOutlineCached = new StrokeOutline();
+    private final BezierStepper mStepperCached = new BezierStepper();
+    private final Path mOutlinePathCached = new Path();
+
+    /**
+     * @param paint the pen paint, its width and style are restored after each segment.
+     */
+    InkRenderer(Paint paint) {
+        mPaint = paint;
+    }
+
+    /**
+     * Creates a paint set up like the pen of the pad.
+     */
+    static Paint createPenPaint(int color) {
+        Paint paint = new Paint();
+        paint.setColor(color);
+        paint.setAntiAlias(true);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        return paint;
+    }
+
+    void setRenderMode(int renderMode) {
+        mRenderMode = renderMode;
+    }
+
+    int getRenderMode() {
+        return mRenderMode;
+    }
+
+    /**
+     * @return the bounds of the ink of the last drawn segment, empty if nothing was drawn.
+     */
+    RectF getBounds() {
+        return mBounds;
+    }
+
+    /**
+     * Computes the bounds {@link #getBounds()} returns after drawing the segment, without
+     * drawing it.
+     */
+    void measure(Bezier curve, float startWidth, float endWidth) {
+        draw(null, curve, startWidth, endWidth);
+    }
+
+    /**
+     * @param canvas the target, null to only compute the bounds.
+     */
+    void draw(@Nullable Canvas canvas, Bezier curve, float startWidth, float endWidth) {
+        render(canvas, null, curve, startWidth, endWidth);
+    }
+
+    /**
+     * Appends the geometry of the segment to the layer instead of drawing it, the bounds are
+     * computed as by {@link #draw(Canvas, Bezier, float, float)}.
+     */
+    void retain(LiveInkLayer layer, Bezier curve, float startWidth, float endWidth) {
+        render(null, layer, curve, startWidth, endWidth);
+    }
+
+    private void render(@Nullable Canvas canvas, @Nullable LiveInkLayer layer, Bezier curve, float startWidth, float endWidth) {
+        mBounds.set(Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE);
+        if (mRenderMode == SignaturePad.RENDER_MODE_PATH) {
+            drawOutline(canvas, layer, curve, startWidth, endWidth);
+        } else {
+            drawPoints(canvas, layer, curve, startWidth, endWidth);
+        }
+        if (mBounds.left > mBounds.right) {
+            mBounds.setEmpty();
+        }
+    }
+
+    private void drawPoints(@Nullable Canvas canvas, @Nullable LiveInkLayer layer, Bezier curve, float startWidth, float endWidth) {
+        float originalWidth = mPaint.getStrokeWidth();
+        float widthDelta = endWidth - startWidth;
+        int drawSteps = (int) Math.floor(curve.length());
+        // The Bezier (x, y) coordinate of every step by forward differencing
+        BezierStepper stepper = mStepperCached.start(curve, drawSteps);
+
+        for (int i = 0; i < drawSteps; i++) {
+            float t = ((float) i) / drawSteps;
+            float ttt = t * t * t;
+
+            float strokeWidth = startWidth + ttt * widthDelta;
+            // Set the incremental stroke width and draw.
+            if (canvas != null) {
+                mPaint.setStrokeWidth(strokeWidth);
+                canvas.drawPoint(stepper.x, stepper.y, mPaint);
+            }
+            if (layer != null) {
+                layer.addPoint(stepper.x, stepper.y, strokeWidth);
+            }
+            addBounds(stepper.x, stepper.y, strokeWidth);
+            stepper.next();
+        }
+
+        mPaint.setStrokeWidth(originalWidth);
+    }
+
+    /**
+     * Draws the segment as a single filled path made of its left and right outline
+     * and a round cap at both ends, so consecutive segments join without gaps.
+     */
+    private void drawOutline(@Nullable Canvas canvas, @Nullable LiveInkLayer layer, Bezier curve, float startWidth, float endWidth) {
+        // As many steps as the curvature and the width change need, not the length
+        int widthSteps = (int) Math.ceil(Math.sqrt(0.75f * Math.abs(endWidth - startWidth) / OUTLINE_TOLERANCE_PX));
+        int steps = Math.max(curve.flatteningSteps(OUTLINE_TOLERANCE_PX), widthSteps);
+        StrokeOutline outline = mOutlineCached.set(curve, startWidth, endWidth, steps);
+        int count = outline.getCount();
+        for (int i = 0; i < count; i++) {
+            addBounds(outline.getCenterX(i), outline.getCenterY(i), outline.getWidth(i));
+        }
+        if (canvas == null && layer == null) {
+            return;
+        }
+
+        // Along the left side and back along the right side
+        int points = count * 2;
+        float area = 0;
+        for (int i = 0; i < points; i++) {
+            int next = (i + 1) % points;
+            area += outlineX(outline, i) * outlineY(outline, next) - outlineX(outline, next) * outlineY(outline, i);
+        }
+        // Every outline winds the same way, so the caps and the outlines of the segments a
+        // layer retains in one path add up instead of leaving their overlap empty
+        boolean reverse = area < 0;
+        Path path = mOutlinePathCached;
+        path.rewind();
+        for (int i = 0; i < points; i++) {
+            int index = reverse ? points - 1 - i : i;
+            if (i == 0) {
+                path.moveTo(outlineX(outline, index), outlineY(outline, index));
+            } else {
+                path.lineTo(outlineX(outline, index), outlineY(outline, index));
+            }
+        }
+        path.close();
+        path.addCircle(outline.getCenterX(0), outline.getCenterY(0), outline.getWidth(0) / 2, Path.Direction.CW);
+        path.addCircle(outline.getCenterX(count - 1), outline.getCenterY(count - 1), outline.getWidth(count - 1) / 2, Path.Direction.CW);
+
+        if (layer != null) {
+            layer.addPath(path);
+        }
+        if (canvas != null) {
+            mPaint.setStyle(Paint.Style.FILL);
+            canvas.drawPath(path, mPaint);
+            mPaint.setStyle(Paint.Style.STROKE);
+        }
+    }
+
+    private static float outlineX(StrokeOutline outline, int i) {
+        int count = outline.getCount();
+        return i < count ? outline.getLeftX(i) : outline.getRightX(count * 2 - 1 - i);
+    }
+
+    private static float outlineY(StrokeOutline outline, int i) {
+        int count = outline.getCount();
+        return i < count ? outline.getLeftY(i) : outline.getRightY(count * 2 - 1 - i);
+    }
+
+    private void addBounds(float x, float y, float strokeWidth) {
+        // Half the width is covered by the dot, plus one pixel of anti-aliasing
+        float radius = strokeWidth / 2 + 1;
+        if (x - radius < mBounds.left) mBounds.left = x - radius;
+        if (x + radius > mBounds.right) mBounds.right = x + radius;
+        if (y - radius < mBounds.top) mBounds.top = y - radius;
+        if (y + radius > mBounds.bottom) mBounds.bottom = y + radius;
+    }
+}
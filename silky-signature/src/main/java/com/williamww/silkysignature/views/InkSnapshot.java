@@ -0,0 +1,92 @@
+package com.williamww.silkysignature.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.support.annotation.Nullable;
+
+/**
+ * The ink of a pad at the moment an asynchronous export was started.
+ *
+ * Strokes are captured as a copy of their samples, so the calling thread only copies a few
+ * arrays and the rasterizing, trimming and scaling run on the export thread, straight at the
+ * output size. Content the strokes cannot rebuild, such as an imported bitmap, text or ink of
+ * a previous pen, is captured as a copy of the pixels instead.
+ */
+final class InkSnapshot {
+
+    private final int mWidth;
+    private final int mHeight;
+    @Nullable
+    private final SignatureRenderer mRenderer;
+    @Nullable
+    private Bitmap mPixels;
+
+    private InkSnapshot(int width, int height, @Nullable SignatureRenderer renderer, @Nullable Bitmap pixels) {
+        mWidth = width;
+        mHeight = height;
+        mRenderer = renderer;
+        mPixels = pixels;
+    }
+
+    /**
+     * @param renderer renders the copied strokes fitted into the pad size, as the pad draws them.
+     */
+    static InkSnapshot ofStrokes(SignatureRenderer renderer, int width, int height) {
+        return new InkSnapshot(width, height, renderer, null);
+    }
+
+    /**
+     * @param pixels a pooled copy of the ink, owned by the snapshot.
+     */
+    static InkSnapshot ofPixels(Bitmap pixels) {
+        return new InkSnapshot(pixels.getWidth(), pixels.getHeight(), null, pixels);
+    }
+
+    int getWidth() {
+        return mWidth;
+    }
+
+    int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Draws the given part of the ink, scaled to the given size, onto a pooled bitmap filled
+     * with the given background color, like {@link SignatureExports#render(Bitmap, Rect, int, int, int)}.
+     *
+     * @param source the part of the pad, null for all of it.
+     */
+    Bitmap render(@Nullable Rect source, int width, int height, int backgroundColor) {
+        if (mPixels != null) {
+            return SignatureExports.render(mPixels, source, width, height, backgroundColor);
+        }
+        Bitmap bitmap = BitmapPool.get().acquire(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        if (backgroundColor != Color.TRANSPARENT) {
+            canvas.drawColor(backgroundColor);
+        }
+        int left = source != null ? source.left : 0;
+        int top = source != null ? source.top : 0;
+        int sourceWidth = source != null ? source.width() : mWidth;
+        int sourceHeight = source != null ? source.height() : mHeight;
+        if (sourceWidth > 0 && sourceHeight > 0) {
+            canvas.scale(width / (float) sourceWidth, height / (float) sourceHeight);
+            canvas.translate(-left, -top);
+            canvas.clipRect(left, top, left + sourceWidth, top + sourceHeight);
+            mRenderer.renderBitmap(canvas, mWidth, mHeight);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Hands the copied pixels back to the pool, the snapshot must not be used afterwards.
+     */
+    void release() {
+        if (mPixels != null) {
+            BitmapPool.get().release(mPixels);
+            mPixels = null;
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.williamww.silkysignature.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The pixels of the pad, split into square tiles which are taken from the {@link BitmapPool}
+ * when something is first drawn onto them. Memory follows the inked area and the view only
+ * composites the tiles inside its clip, so large or zoomable pads stay cheap.
+ *
+ * With a tile size of 0 the surface is a single bitmap of the pad size, as the pad always had.
+ *
+ * Drawing goes through {@link #lock(float, float, float, float)}, which hands out a canvas per
+ * touched tile, already translated so the pad coordinates can be used as they are.
+ *
+ * In alpha only mode the tiles are {@link Bitmap.Config#ALPHA_8}, a quarter of the memory, and
+ * only hold the coverage of the single colored ink, which is tinted when the surface is drawn.
+ * Content of other colors needs {@link #convertToArgb()} first.
+ */
+final class InkSurface {
+
+    private static final Paint FILTER_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+    // Copies the pixels as they are, alpha only ones into the alpha of full color ones and back
+    private static final Paint COPY_PAINT = createCopyPaint();
+
+    private int mTileSize;
+    private int mWidth;
+    private int mHeight;
+    private int mTileWidth;
+    private int mTileHeight;
+    private int mColumns;
+    private int mRows;
+    private Bitmap[] mTiles = new Bitmap[0];
+    private Canvas[] mCanvases = new Canvas[0];
+    private int[] mLocked = new int[0];
+    private int mLockedCount;
+    private boolean mAlphaOnly;
+    private Bitmap.Config mConfig = Bitmap.Config.ARGB_8888;
+    private int mTint = Color.BLACK;
+    //Live bitmap handed out to the app, dropped instead of pooled once it is released
+    @Nullable
+    private Bitmap mHandedOut;
+    private final Paint mTintPaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+
+    // Cache
+    private final Rect mClipCached = new Rect();
+    private final RectF mTileRectCached = new RectF();
+
+    /**
+     * @param tileSize edge length of the tiles in pixel, 0 for a single bitmap.
+     */
+    InkSurface(int tileSize) {
+        mTileSize = Math.max(0, tileSize);
+    }
+
+    int getTileSize() {
+        return mTileSize;
+    }
+
+    /**
+     * Changes the tile size, dropping the content.
+     */
+    void setTileSize(int tileSize) {
+        release();
+        mTileSize = Math.max(0, tileSize);
+        layout();
+    }
+
+    /**
+     * Switches the alpha only mode. Turning it on applies once the surface is released, turning
+     * it off converts the content right away.
+     */
+    void setAlphaOnly(boolean alphaOnly) {
+        mAlphaOnly = alphaOnly;
+        if (!alphaOnly) {
+            convertToArgb();
+        } else if (isBlank()) {
+            mConfig = Bitmap.Config.ALPHA_8;
+        }
+    }
+
+    /**
+     * @return whether the tiles currently only hold the coverage of the ink.
+     */
+    boolean isAlphaOnly() {
+        return mConfig == Bitmap.Config.ALPHA_8;
+    }
+
+    int getTint() {
+        return mTint;
+    }
+
+    /**
+     * Sets the color the coverage is drawn with in alpha only mode, its alpha is ignored as the
+     * coverage holds the alpha of the ink already.
+     */
+    void setTint(int color) {
+        mTint = color | 0xFF000000;
+    }
+
+    /**
+     * Turns alpha only tiles into ARGB tiles of the tinted ink, so content of any color can be
+     * drawn. The surface stays ARGB until it is released.
+     */
+    void convertToArgb() {
+        if (!isAlphaOnly()) {
+            return;
+        }
+        mConfig = Bitmap.Config.ARGB_8888;
+        Paint paint = tintPaint(255);
+        for (int i = 0; i < mTiles.length; i++) {
+            Bitmap alpha = mTiles[i];
+            if (alpha == null) {
+                continue;
+            }
+            Bitmap tile = BitmapPool.get().acquire(mTileWidth, mTileHeight, mConfig);
+            new Canvas(tile).drawBitmap(alpha, 0, 0, paint);
+            BitmapPool.get().release(alpha);
+            mTiles[i] = tile;
+            mCanvases[i] = canvasFor(i, tile);
+        }
+    }
+
+    /**
+     * @return whether no tile is allocated, so nothing was drawn since the last release.
+     */
+    boolean isBlank() {
+        for (Bitmap tile : mTiles) {
+            if (tile != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int getWidth() {
+        return mWidth;
+    }
+
+    int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Resizes the surface, dropping the content.
+     */
+    void setSize(int width, int height) {
+        release();
+        mWidth = width;
+        mHeight = height;
+        layout();
+    }
+
+    private void layout() {
+        if (mWidth <= 0 || mHeight <= 0) {
+            mTileWidth = mTileHeight = mColumns = mRows = 0;
+        } else if (mTileSize == 0) {
+            mTileWidth = mWidth;
+            mTileHeight = mHeight;
+            mColumns = mRows = 1;
+        } else {
+            mTileWidth = mTileHeight = mTileSize;
+            mColumns = (mWidth + mTileSize - 1) / mTileSize;
+            mRows = (mHeight + mTileSize - 1) / mTileSize;
+        }
+        int count = mColumns * mRows;
+        mTiles = new Bitmap[count];
+        mCanvases = new Canvas[count];
+        mLocked = new int[count];
+        mLockedCount = 0;
+    }
+
+    /**
+     * Hands every tile back to the pool, leaving the surface transparent in the configured mode.
+     */
+    void release() {
+        for (int i = 0; i < mTiles.length; i++) {
+            releaseTile(i);
+        }
+        mLockedCount = 0;
+        mConfig = mAlphaOnly ? Bitmap.Config.ALPHA_8 : Bitmap.Config.ARGB_8888;
+    }
+
+    private void releaseTile(int index) {
+        if (mTiles[index] != null) {
+            if (mTiles[index] == mHandedOut) {
+                // The app may still show it, it must neither be reused nor recycled
+                mHandedOut = null;
+            } else {
+                BitmapPool.get().release(mTiles[index]);
+            }
+            mTiles[index] = null;
+            mCanvases[index] = null;
+        }
+    }
+
+    /**
+     * Packs the allocated tiles into a deflated copy of their premultiplied pixels and releases
+     * the surface. It is exact, unlike a PNG, and mostly transparent ink deflates to a small
+     * fraction of its memory. As it runs under memory pressure the pixels go through a bitmap
+     * of a single row, and every tile goes back to the pool as soon as it is packed.
+     */
+    byte[] pack() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        Bitmap row = null;
+        try {
+            DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater));
+            boolean alphaOnly = mConfig == Bitmap.Config.ALPHA_8;
+            out.writeBoolean(alphaOnly);
+            row = BitmapPool.get().acquire(mTileWidth, 1, Bitmap.Config.ARGB_8888);
+            Canvas rowCanvas = new Canvas(row);
+            byte[] pixels = new byte[mTileWidth * 4];
+            for (int i = 0; i < mTiles.length; i++) {
+                Bitmap tile = mTiles[i];
+                if (tile == null) {
+                    continue;
+                }
+                out.writeInt(i);
+                for (int y = 0; y < mTileHeight; y++) {
+                    rowCanvas.drawBitmap(tile, 0, -y, COPY_PAINT);
+                    row.copyPixelsToBuffer(ByteBuffer.wrap(pixels));
+                    if (alphaOnly) {
+                        // The coverage is the alpha of the pixels, the last of their four bytes
+                        for (int x = 0; x < mTileWidth; x++) {
+                            out.write(pixels[x * 4 + 3]);
+                        }
+                    } else {
+                        out.write(pixels);
+                    }
+                }
+                releaseTile(i);
+            }
+            out.writeInt(-1);
+            out.close();
+        } catch (IOException e) {
+            // Written to memory only
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+            if (row != null) {
+                BitmapPool.get().release(row);
+            }
+            release();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Releases the surface and restores the pixels of {@link #pack()}, which must have been
+     * packed at the current size and tile size.
+     */
+    void unpack(byte[] packed) {
+        release();
+        Inflater inflater = new Inflater();
+        Bitmap row = null;
+        try {
+            DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(packed), inflater));
+            boolean alphaOnly = in.readBoolean();
+            mConfig = alphaOnly ? Bitmap.Config.ALPHA_8 : Bitmap.Config.ARGB_8888;
+            row = BitmapPool.get().acquire(mTileWidth, 1, Bitmap.Config.ARGB_8888);
+            byte[] pixels = new byte[mTileWidth * 4];
+            for (int i = in.readInt(); i >= 0; i = in.readInt()) {
+                tile(i);
+                Canvas canvas = mCanvases[i];
+                float left = (i % mColumns) * mTileWidth;
+                float top = (i / mColumns) * mTileHeight;
+                for (int y = 0; y < mTileHeight; y++) {
+                    if (alphaOnly) {
+                        for (int x = 0; x < mTileWidth; x++) {
+                            pixels[x * 4 + 3] = in.readByte();
+                        }
+                    } else {
+                        in.readFully(pixels);
+                    }
+                    row.copyPixelsFromBuffer(ByteBuffer.wrap(pixels));
+                    canvas.drawBitmap(row, left, top + y, COPY_PAINT);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+            if (row != null) {
+                BitmapPool.get().release(row);
+            }
+        }
+    }
+
+    /**
+     * @return whether the bitmap is one of the tiles.
+     */
+    boolean owns(Bitmap bitmap) {
+        for (Bitmap tile : mTiles) {
+            if (tile == bitmap) {
+                return bitmap != null;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the bitmap of the whole surface, only available without tiles in ARGB.
+     *
+     * @return the live bitmap or null if the surface is tiled or alpha only.
+     */
+    @Nullable
+    Bitmap peekBitmap() {
+        if (mTileSize != 0 || mTiles.length == 0 || isAlphaOnly()) {
+            return null;
+        }
+        return tile(0);
+    }
+
+    /**
+     * Returns the bitmap of {@link #peekBitmap()} for the app to keep. It stays the live bitmap
+     * of the surface until the surface is released, which then leaves it to the app instead of
+     * handing it back to the pool.
+     *
+     * @return the live bitmap or null if the surface is tiled or alpha only.
+     */
+    @Nullable
+    Bitmap handOutBitmap() {
+        Bitmap bitmap = peekBitmap();
+        if (bitmap != null) {
+            mHandedOut = bitmap;
+        }
+        return bitmap;
+    }
+
+    /**
+     * Prepares the tiles covering the given area for drawing, allocating the missing ones.
+     *
+     * @return the number of canvases available through {@link #getCanvas(int)}.
+     */
+    int lock(float left, float top, float right, float bottom) {
+        mLockedCount = 0;
+        if (mTiles.length == 0) {
+            return 0;
+        }
+        if (right <= 0 || bottom <= 0 || left >= mWidth || top >= mHeight || right <= left || bottom <= top) {
+            return 0;
+        }
+        int firstColumn = clamp((int) Math.floor(left) / mTileWidth, mColumns);
+        int lastColumn = clamp(((int) Math.ceil(right) - 1) / mTileWidth, mColumns);
+        int firstRow = clamp((int) Math.floor(top) / mTileHeight, mRows);
+        int lastRow = clamp(((int) Math.ceil(bottom) - 1) / mTileHeight, mRows);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int index = row * mColumns + column;
+                tile(index);
+                mLocked[mLockedCount++] = index;
+            }
+        }
+        return mLockedCount;
+    }
+
+    /**
+     * Prepares every tile for drawing, for content spread over the whole pad.
+     */
+    int lockAll() {
+        return lock(0, 0, mWidth, mHeight);
+    }
+
+    /**
+     * @param i index below the count returned by the last lock.
+     * @return the canvas of the tile in pad coordinates.
+     */
+    Canvas getCanvas(int i) {
+        return mCanvases[mLocked[i]];
+    }
+
+    /**
+     * Composites the tiles inside the clip of the given canvas.
+     */
+    void draw(Canvas canvas, @Nullable Paint paint) {
+        if (mTiles.length == 0 || !canvas.getClipBounds(mClipCached)) {
+            return;
+        }
+        if (isAlphaOnly()) {
+            paint = tintPaint(paint != null ? paint.getAlpha() : 255);
+        }
+        Rect clip = mClipCached;
+        int firstColumn = clamp(clip.left / mTileWidth, mColumns);
+        int lastColumn = clamp((clip.right - 1) / mTileWidth, mColumns);
+        int firstRow = clamp(clip.top / mTileHeight, mRows);
+        int lastRow = clamp((clip.bottom - 1) / mTileHeight, mRows);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                Bitmap tile = mTiles[row * mColumns + column];
+                if (tile != null) {
+                    canvas.drawBitmap(tile, column * mTileWidth, row * mTileHeight, paint);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the given area of the surface scaled to fill a width x height area at the origin
+     * of the canvas.
+     *
+     * @param source the area, null for the whole surface.
+     */
+    void drawTo(Canvas canvas, @Nullable Rect source, int width, int height) {
+        int sourceLeft = source != null ? source.left : 0;
+        int sourceTop = source != null ? source.top : 0;
+        int sourceWidth = source != null ? source.width() : mWidth;
+        int sourceHeight = source != null ? source.height() : mHeight;
+        if (sourceWidth <= 0 || sourceHeight <= 0) {
+            return;
+        }
+        float scaleX = width / (float) sourceWidth;
+        float scaleY = height / (float) sourceHeight;
+        boolean scaled = width != sourceWidth || height != sourceHeight;
+        Paint paint = isAlphaOnly() ? tintPaint(255) : scaled ? FILTER_PAINT : null;
+        for (int row = 0; row < mRows; row++) {
+            for (int column = 0; column < mColumns; column++) {
+                Bitmap tile = mTiles[row * mColumns + column];
+                int tileLeft = column * mTileWidth;
+                int tileTop = row * mTileHeight;
+                if (tile == null
+                        || tileLeft >= sourceLeft + sourceWidth || tileLeft + mTileWidth <= sourceLeft
+                        || tileTop >= sourceTop + sourceHeight || tileTop + mTileHeight <= sourceTop) {
+                    continue;
+                }
+                if (!scaled) {
+                    canvas.drawBitmap(tile, tileLeft - sourceLeft, tileTop - sourceTop, paint);
+                } else {
+                    // Tiles meet on the same fractional edges, the filtering leaves no seams
+                    mTileRectCached.set((tileLeft - sourceLeft) * scaleX, (tileTop - sourceTop) * scaleY,
+                            (tileLeft + mTileWidth - sourceLeft) * scaleX, (tileTop + mTileHeight - sourceTop) * scaleY);
+                    canvas.drawBitmap(tile, null, mTileRectCached, paint);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a row of pixels like {@link Bitmap#getPixels}, missing tiles read as transparent.
+     * Alpha only tiles read as black of the coverage.
+     */
+    void getPixels(int[] pixels, int x, int y, int width) {
+        int row = y / mTileHeight;
+        int end = x + width;
+        while (x < end) {
+            int column = x / mTileWidth;
+            int tileLeft = column * mTileWidth;
+            int count = Math.min(end, tileLeft + mTileWidth) - x;
+            int offset = width - (end - x);
+            Bitmap tile = mTiles[row * mColumns + column];
+            if (tile == null) {
+                for (int i = 0; i < count; i++) {
+                    pixels[offset + i] = 0;
+                }
+            } else {
+                tile.getPixels(pixels, offset, width, x - tileLeft, y - row * mTileHeight, count, 1);
+            }
+            x += count;
+        }
+    }
+
+    private Bitmap tile(int index) {
+        Bitmap tile = mTiles[index];
+        if (tile == null) {
+            tile = BitmapPool.get().acquire(mTileWidth, mTileHeight, mConfig);
+            mTiles[index] = tile;
+            mCanvases[index] = canvasFor(index, tile);
+        }
+        return tile;
+    }
+
+    private Canvas canvasFor(int index, Bitmap tile) {
+        Canvas canvas = new Canvas(tile);
+        canvas.translate(-(index % mColumns) * mTileWidth, -(index / mColumns) * mTileHeight);
+        return canvas;
+    }
+
+    /**
+     * The alpha only tiles are drawn as masks in the color of the paint.
+     */
+    private Paint tintPaint(int alpha) {
+        mTintPaint.setColor(mTint);
+        mTintPaint.setAlpha(alpha);
+        return mTintPaint;
+    }
+
+    private static Paint createCopyPaint() {
+        Paint paint = new Paint();
+        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+        return paint;
+    }
+
+    private static int clamp(int value, int count) {
+        return Math.max(0, Math.min(count - 1, value));
+    }
+}
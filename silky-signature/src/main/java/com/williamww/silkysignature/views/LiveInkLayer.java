@@ -0,0 +1,173 @@
+package com.williamww.silkysignature.views;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import com.williamww.silkysignature.utils.Bezier;
+import com.williamww.silkysignature.utils.TimedPoint;
+
+import java.util.Arrays;
+
+/**
+ * Retains the segments of the stroke being drawn, so a hardware accelerated view can draw
+ * them straight onto its own canvas. They are flattened into the ink surface once the stroke
+ * ends, which takes the software rasterizing out of every move event.
+ *
+ * The geometry of each segment is built once, when it is added: its outline is appended to a
+ * single path in path mode, its dots to a buffer per stroke width in points mode. A frame then
+ * costs one draw call per width, however long the stroke got.
+ */
+final class LiveInkLayer {
+
+    // start, control1, control2 and end point, start and end width
+    private static final int SEGMENT_FLOATS = 10;
+
+    private float[] mSegments = new float[SEGMENT_FLOATS * 64];
+    private int mCount;
+    private final RectF mBounds = new RectF();
+
+    //Dots are drawn with their width rounded to this, too little to tell from the flattened ink
+    private static final float WIDTH_BUCKET_PX = 0.25f;
+
+    // Outlines of the segments in path mode
+    private final Path mPath = new Path();
+    private boolean mHasPath;
+    // x, y of the dots of the segments in points mode, by width bucket
+    private float[][] mPoints = new float[0][];
+    private int[] mPointCounts = new int[0];
+
+    // Cache
+    private final Bezier mBezierCached = new Bezier();
+    private final TimedPoint[] mPointsCached = {
+            new TimedPoint(), new TimedPoint(), new TimedPoint(), new TimedPoint()
+    };
+
+    int size() {
+        return mCount;
+    }
+
+    boolean isEmpty() {
+        return mCount == 0;
+    }
+
+    /**
+     * @return the area covered by the retained segments.
+     */
+    RectF getBounds() {
+        return mBounds;
+    }
+
+    void clear() {
+        mCount = 0;
+        mBounds.setEmpty();
+        mPath.rewind();
+        mHasPath = false;
+        Arrays.fill(mPointCounts, 0);
+    }
+
+    /**
+     * Retains a copy of the segment and its geometry as the renderer would draw it.
+     *
+     * @param area the area the segment covers.
+     */
+    void add(Bezier curve, float startWidth, float endWidth, RectF area, InkRenderer renderer) {
+        int offset = mCount * SEGMENT_FLOATS;
+        if (offset + SEGMENT_FLOATS > mSegments.length) {
+            float[] segments = new float[mSegments.length * 2];
+            System.arraycopy(mSegments, 0, segments, 0, offset);
+            mSegments = segments;
+        }
+        float[] s = mSegments;
+        s[offset] = curve.startPoint.x;
+        s[offset + 1] = curve.startPoint.y;
+        s[offset + 2] = curve.control1.x;
+        s[offset + 3] = curve.control1.y;
+        s[offset + 4] = curve.control2.x;
+        s[offset + 5] = curve.control2.y;
+        s[offset + 6] = curve.endPoint.x;
+        s[offset + 7] = curve.endPoint.y;
+        s[offset + 8] = startWidth;
+        s[offset + 9] = endWidth;
+        mCount++;
+        renderer.retain(this, curve, startWidth, endWidth);
+        if (mBounds.isEmpty()) {
+            mBounds.set(area);
+        } else {
+            mBounds.union(area);
+        }
+    }
+
+    /**
+     * @param i index of the segment.
+     * @return the segment, only valid until the next call.
+     */
+    Bezier get(int i) {
+        int offset = i * SEGMENT_FLOATS;
+        float[] s = mSegments;
+        return mBezierCached.set(
+                mPointsCached[0].set(s[offset], s[offset + 1], 0),
+                mPointsCached[1].set(s[offset + 2], s[offset + 3], 0),
+                mPointsCached[2].set(s[offset + 4], s[offset + 5], 0),
+                mPointsCached[3].set(s[offset + 6], s[offset + 7], 0));
+    }
+
+    float getStartWidth(int i) {
+        return mSegments[i * SEGMENT_FLOATS + 8];
+    }
+
+    float getEndWidth(int i) {
+        return mSegments[i * SEGMENT_FLOATS + 9];
+    }
+
+    /**
+     * Appends the filled outline of a segment.
+     */
+    void addPath(Path outline) {
+        mPath.addPath(outline);
+        mHasPath = true;
+    }
+
+    /**
+     * Appends a dot of a segment.
+     */
+    void addPoint(float x, float y, float width) {
+        int bucket = Math.round(width / WIDTH_BUCKET_PX);
+        if (bucket >= mPointCounts.length) {
+            mPoints = Arrays.copyOf(mPoints, bucket + 1);
+            mPointCounts = Arrays.copyOf(mPointCounts, bucket + 1);
+        }
+        float[] points = mPoints[bucket];
+        int count = mPointCounts[bucket];
+        if (points == null) {
+            points = mPoints[bucket] = new float[128];
+        } else if (count + 2 > points.length) {
+            points = mPoints[bucket] = Arrays.copyOf(points, points.length * 2);
+        }
+        points[count] = x;
+        points[count + 1] = y;
+        mPointCounts[bucket] = count + 2;
+    }
+
+    /**
+     * Draws the retained segments onto the given canvas.
+     *
+     * @param paint the pen paint, its width and style are restored afterwards.
+     */
+    void draw(Canvas canvas, Paint paint) {
+        float originalWidth = paint.getStrokeWidth();
+        if (mHasPath) {
+            paint.setStyle(Paint.Style.FILL);
+            canvas.drawPath(mPath, paint);
+            paint.setStyle(Paint.Style.STROKE);
+        }
+        for (int bucket = 0; bucket < mPointCounts.length; bucket++) {
+            if (mPointCounts[bucket] > 0) {
+                paint.setStrokeWidth(bucket * WIDTH_BUCKET_PX);
+                canvas.drawPoints(mPoints[bucket], 0, mPointCounts[bucket], paint);
+            }
+        }
+        paint.setStrokeWidth(originalWidth);
+    }
+}
@@ -0,0 +1,113 @@
+package com.williamww.silkysignature.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.annotation.Nullable;
+
+/**
+ * Compositing and scaling steps of the bitmap exports. They only read the given bitmap,
+ * so they run on the live ink bitmap as well as on a snapshot in a background thread.
+ *
+ * Every export is a single draw of the ink into a pooled bitmap of the output size, so a
+ * thumbnail never costs a full resolution intermediate.
+ */
+final class SignatureExports {
+
+    private static final Paint FILTER_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+
+    private SignatureExports() {
+    }
+
+    static int clampPercentage(int compressPercentage) {
+        if (compressPercentage < 0) {
+            return 0;
+        } else if (compressPercentage > 100) {
+            return 100;
+        }
+        return compressPercentage;
+    }
+
+    /**
+     * Draws the given part of the ink, scaled to the given size, onto a pooled bitmap filled
+     * with the given background color.
+     *
+     * @param source the part of the ink, null for all of it.
+     */
+    static Bitmap render(Bitmap ink, @Nullable Rect source, int width, int height, int backgroundColor) {
+        Bitmap bitmap = BitmapPool.get().acquire(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        if (backgroundColor != Color.TRANSPARENT) {
+            canvas.drawColor(backgroundColor);
+        }
+        int sourceWidth = source != null ? source.width() : ink.getWidth();
+        int sourceHeight = source != null ? source.height() : ink.getHeight();
+        if (sourceWidth == width && sourceHeight == height) {
+            // Same size, a plain copy without filtering
+            float left = source != null ? -source.left : 0;
+            float top = source != null ? -source.top : 0;
+            canvas.drawBitmap(ink, left, top, null);
+        } else {
+            canvas.drawBitmap(ink, source, new Rect(0, 0, width, height), FILTER_PAINT);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Draws the given part of the ink surface, scaled to the given size, onto a pooled bitmap
+     * filled with the given background color. Only the tiles inside the part are drawn.
+     *
+     * @param source the part of the surface, null for all of it.
+     */
+    static Bitmap render(InkSurface ink, @Nullable Rect source, int width, int height, int backgroundColor) {
+        Bitmap bitmap = BitmapPool.get().acquire(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        if (backgroundColor != Color.TRANSPARENT) {
+            canvas.drawColor(backgroundColor);
+        }
+        ink.drawTo(canvas, source, width, height);
+        return bitmap;
+    }
+
+    /**
+     * Copies the ink surface into a pooled bitmap.
+     */
+    static Bitmap copy(InkSurface ink) {
+        return render(ink, null, ink.getWidth(), ink.getHeight(), Color.TRANSPARENT);
+    }
+
+    /**
+     * Copies the given part of the ink surface into a pooled bitmap.
+     */
+    static Bitmap crop(InkSurface ink, Rect bounds) {
+        return render(ink, bounds, bounds.width(), bounds.height(), Color.TRANSPARENT);
+    }
+
+    /**
+     * @return the height keeping the aspect ratio of the source at the given width.
+     */
+    static int heightForWidth(int sourceWidth, int sourceHeight, int width) {
+        return (int) (sourceHeight * width / (double) sourceWidth);
+    }
+
+    /**
+     * Resolves a requested output size against the size of the source, writing width and
+     * height into the given array. A size of 0 or less keeps the aspect ratio of the source,
+     * both of them keep the source size.
+     */
+    static int[] targetSize(int sourceWidth, int sourceHeight, int width, int height, int[] out) {
+        if (width <= 0 && height <= 0) {
+            width = sourceWidth;
+            height = sourceHeight;
+        } else if (width <= 0) {
+            width = Math.max(1, (int) (sourceWidth * height / (double) sourceHeight));
+        } else if (height <= 0) {
+            height = Math.max(1, (int) (sourceHeight * width / (double) sourceWidth));
+        }
+        out[0] = width;
+        out[1] = height;
+        return out;
+    }
+}
@@ -1,9 +1,14 @@
 package com.williamww.silkysignature.views;
 
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.DashPathEffect;
@@ -12,8 +17,14 @@ import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Typeface;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.support.annotation.ColorInt;
 import android.support.annotation.ColorRes;
 import android.support.annotation.Nullable;
@@ -27,17 +38,34 @@ import android.view.ViewTreeObserver;
 
 import com.williamww.silkysignature.R;
 import com.williamww.silkysignature.utils.Bezier;
-import com.williamww.silkysignature.utils.ControlTimedPoints;
+import com.williamww.silkysignature.utils.SampleFilter;
+import com.williamww.silkysignature.utils.StrokeCodec;
+import com.williamww.silkysignature.utils.StrokeEngine;
+import com.williamww.silkysignature.utils.StrokeInput;
+import com.williamww.silkysignature.utils.StrokeStore;
 import com.williamww.silkysignature.utils.SvgBuilder;
-import com.williamww.silkysignature.utils.TimedPoint;
 import com.williamww.silkysignature.view.ViewCompat;
 import com.williamww.silkysignature.view.ViewTreeObserverCompat;
 
 import org.w3c.dom.Text;
 
-import java.util.ArrayList;
-import java.util.List;
-
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 public class SignaturePad extends View {
     private static final int HINT_TEXT_SIZE_START = 60;
@@ -50,21 +78,67 @@ public class SignaturePad extends View {
     public static final int TEXT_VERTICLAL_ALIGN_TOP = 2;
     public static final int TEXT_VERTICLAL_ALIGN_BOTTOM = 3;
 
+    /** Draws every segment as a dot per pixel of its length. */
+    public static final int RENDER_MODE_POINTS = 1;
+    /** Draws every segment as one filled outline path. */
+    public static final int RENDER_MODE_PATH = 2;
+
+    /** Lossless PNG, keeps the transparency. */
+    public static final int EXPORT_FORMAT_PNG = 1;
+    /** JPEG, a transparent background is exported white. */
+    public static final int EXPORT_FORMAT_JPEG = 2;
+    /** WebP, needs API 14. */
+    public static final int EXPORT_FORMAT_WEBP = 3;
+    /** UTF-8 encoded SVG document of the strokes, without texts and imported bitmaps. */
+    public static final int EXPORT_FORMAT_SVG = 4;
+
     //View state
-    private List<TimedPoint> mPoints;
+    private final StrokeStore mStrokes = new StrokeStore();
     private boolean mIsEmpty;
     private float mLastTouchX;
     private float mLastTouchY;
-    private float mLastVelocity;
-    private float mLastWidth;
     private RectF mDirtyRect;
 
     private final SvgBuilder mSvgBuilder = new SvgBuilder();
-
-    // Cache
-    private List<TimedPoint> mPointsCache = new ArrayList<>();
-    private ControlTimedPoints mControlTimedPointsCached = new ControlTimedPoints();
-    private Bezier mBezierCached = new Bezier();
+    //Bumped whenever the ink changes, the exports are cached against it
+    private int mInkVersion;
+    private final ExportCache mExportCache = new ExportCache();
+    private final Rect mTrimBoundsCached = new Rect();
+    private boolean mHasTrimBounds;
+    private int mTrimBoundsVersion = -1;
+
+    private final StrokeEngine mEngine = new StrokeEngine();
+    private final StrokeEngine.CurveListener mCurveListener = new StrokeEngine.CurveListener() {
+        @Override
+        public void onCurve(Bezier curve, float startWidth, float endWidth) {
+            addBezier(curve, startWidth, endWidth);
+        }
+    };
+    private final StrokeEngine.CurveListener mRasterListener = new StrokeEngine.CurveListener() {
+        @Override
+        public void onCurve(Bezier curve, float startWidth, float endWidth) {
+            drawSegment(curve, startWidth, endWidth, segmentArea(curve, startWidth, endWidth, mSegmentAreaCached));
+        }
+    };
+    //Adds re-rendered segments to the vectors and the bounds only
+    private final StrokeEngine.CurveListener mMeasureListener = new StrokeEngine.CurveListener() {
+        @Override
+        public void onCurve(Bezier curve, float startWidth, float endWidth) {
+            mSvgBuilder.append(curve, (startWidth + endWidth) / 2);
+            mInkRenderer.measure(curve, startWidth, endWidth);
+            RectF bounds = mInkRenderer.getBounds();
+            if (!bounds.isEmpty()) {
+                unionStrokeBounds(bounds.left, bounds.top, bounds.right, bounds.bottom);
+            }
+        }
+    };
+    //Size the strokes were recorded at, 0 while there are none
+    private int mStrokeSpaceWidth;
+    private int mStrokeSpaceHeight;
+    //Maps the strokes into the pad, once it was resized or strokes of another size were read
+    private float mInkScale = 1f;
+    private float mInkOffsetX;
+    private float mInkOffsetY;
 
     //Configurable parameters
     private int mMinWidth;
@@ -72,6 +146,25 @@ public class SignaturePad extends View {
     private float mVelocityFilterWeight;
     private OnSignedListener mOnSignedListener;
     private boolean mClearOnDoubleClick;
+    private boolean mTouchHistoryEnabled;
+    private boolean mLiveInkEnabled;
+    private boolean mInStroke;
+    private final LiveInkLayer mLiveInk = new LiveInkLayer();
+    //State before the first segment of the stroke being drawn, to smooth it again once simplified
+    private boolean mStrokeMarked;
+    private final float[] mStrokeEngineState = new float[2];
+    private final RectF mStrokeStartBounds = new RectF();
+    private boolean mStrokeStartHasBounds;
+    //Whether no segment of the stroke being drawn reached the ink surface yet
+    private boolean mStrokeOffSurface;
+    private final RectF mSegmentAreaCached = new RectF();
+    private int mInkPredictionMs;
+    private final SampleFilter mSampleFilter = new SampleFilter();
+    private final StrokeInput mInput = new StrokeInput(mStrokes, mSampleFilter, mEngine);
+    private boolean mHasTail;
+    private final float[] mTail = new float[StrokeEngine.TAIL_SIZE];
+    private final RectF mTailBounds = new RectF();
+    private final Path mTailPathCached = new Path();
 
     //Click values
     private long mFirstClick;
@@ -84,16 +177,53 @@ public class SignaturePad extends View {
     private final int DEFAULT_ATTR_PEN_COLOR = Color.BLACK;
     private final float DEFAULT_ATTR_VELOCITY_FILTER_WEIGHT = 0.9f;
     private final boolean DEFAULT_ATTR_CLEAR_ON_DOUBLE_CLICK = false;
+    private final boolean DEFAULT_ATTR_TOUCH_HISTORY_ENABLED = true;
+    private final int DEFAULT_ATTR_RENDER_MODE = RENDER_MODE_POINTS;
+    private final int DEFAULT_ATTR_INK_TILE_SIZE_PX = 0;
+    private final boolean DEFAULT_ATTR_LIVE_INK_ENABLED = false;
+    private final int DEFAULT_ATTR_INK_PREDICTION_MS = 0;
+    private final int DEFAULT_ATTR_MIN_SAMPLE_DISTANCE_PX = 0;
+    private final int DEFAULT_ATTR_MIN_SAMPLE_INTERVAL_MS = 0;
+    private final int DEFAULT_ATTR_SIMPLIFY_TOLERANCE_PX = 0;
+    private final boolean DEFAULT_ATTR_ALPHA_INK_ENABLED = false;
+    private final boolean DEFAULT_ATTR_RETAINED_MODE_ENABLED = false;
+    //Longest predicted way, in pen widths
+    private static final int MAX_PREDICTION_PEN_WIDTHS = 4;
+    //Budget of the strokes in the saved state, far below the Binder transaction limit
+    private static final int MAX_SAVED_STROKES_BYTES = 64 * 1024;
+    //Simplify tolerances tried in turn when the strokes exceed the budget, then doubled further
+    private static final float[] SAVED_STROKES_TOLERANCES_PX = {0.25f, 0.5f, 1f, 2f};
+    //Budget of the pixels the strokes cannot rebuild in the saved state, halved in size until they fit
+    private static final int MAX_SAVED_RASTER_BYTES = 128 * 1024;
 
     private Paint mPaint = new Paint();
-    private Bitmap mSignatureBitmap = null;
-    private Canvas mSignatureBitmapCanvas = null;
+    private final InkRenderer mInkRenderer = new InkRenderer(mPaint);
+    private final InkSurface mSurface = new InkSurface(0);
+    private boolean mSurfaceReady = false;
+    private boolean mRetainedModeEnabled;
+    //Whether the surface lacks ink of the strokes and is rebuilt before it is used
+    private boolean mRasterStale = false;
+    //Whether the surface holds content the strokes cannot rebuild, imported or of another pen
+    private boolean mRasterPinned = false;
+    //Pixels of a pinned surface dropped under memory pressure, restored by rebuildRaster()
+    private byte[] mPackedRaster;
+    private ComponentCallbacks mMemoryCallbacks;
     protected float strokeLeft = -1, strokeRight = -1, strokeTop = -1, strokeBottom = -1;
+    //Whether the stroke bounds above contain any ink yet
+    private boolean mHasStrokeBounds = false;
+    //Bounds of the static text, kept apart as the text can be replaced
+    private final RectF mTextBounds = new RectF();
+    private final Rect mInkBoundsCached = new Rect();
     protected TextBuilder lastText;
     private String hintText = null;
     private boolean hintCleared = false;
     private int hintTextColor = Color.BLACK, hintBorderColor = Color.BLACK;
 
+    //Background exports
+    private static ExecutorService sDefaultExportExecutor;
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private Executor mExportExecutor;
+
     /**
      *
      * @param context
@@ -131,8 +261,19 @@ public class SignaturePad extends View {
             mMinWidth = a.getDimensionPixelSize(R.styleable.SignaturePad_penMinWidth, convertDpToPx(DEFAULT_ATTR_PEN_MIN_WIDTH_PX));
             mMaxWidth = a.getDimensionPixelSize(R.styleable.SignaturePad_penMaxWidth, convertDpToPx(DEFAULT_ATTR_PEN_MAX_WIDTH_PX));
             mPaint.setColor(a.getColor(R.styleable.SignaturePad_penColor, DEFAULT_ATTR_PEN_COLOR));
+            mSurface.setTint(mPaint.getColor());
             mVelocityFilterWeight = a.getFloat(R.styleable.SignaturePad_velocityFilterWeight, DEFAULT_ATTR_VELOCITY_FILTER_WEIGHT);
             mClearOnDoubleClick = a.getBoolean(R.styleable.SignaturePad_clearOnDoubleClick, DEFAULT_ATTR_CLEAR_ON_DOUBLE_CLICK);
+            mTouchHistoryEnabled = a.getBoolean(R.styleable.SignaturePad_touchHistoryEnabled, DEFAULT_ATTR_TOUCH_HISTORY_ENABLED);
+            mInkRenderer.setRenderMode(a.getInt(R.styleable.SignaturePad_renderMode, DEFAULT_ATTR_RENDER_MODE));
+            mSurface.setTileSize(a.getDimensionPixelSize(R.styleable.SignaturePad_inkTileSize, DEFAULT_ATTR_INK_TILE_SIZE_PX));
+            mLiveInkEnabled = a.getBoolean(R.styleable.SignaturePad_liveInkEnabled, DEFAULT_ATTR_LIVE_INK_ENABLED);
+            mInkPredictionMs = a.getInt(R.styleable.SignaturePad_inkPrediction, DEFAULT_ATTR_INK_PREDICTION_MS);
+            mSampleFilter.setMinDistance(a.getDimension(R.styleable.SignaturePad_minSampleDistance, DEFAULT_ATTR_MIN_SAMPLE_DISTANCE_PX));
+            mSampleFilter.setMinTimeDelta(TimeUnit.MILLISECONDS.toNanos(a.getInt(R.styleable.SignaturePad_minSampleInterval, DEFAULT_ATTR_MIN_SAMPLE_INTERVAL_MS)));
+            mSampleFilter.setSimplifyTolerance(a.getDimension(R.styleable.SignaturePad_simplifyTolerance, DEFAULT_ATTR_SIMPLIFY_TOLERANCE_PX));
+            mSurface.setAlphaOnly(a.getBoolean(R.styleable.SignaturePad_alphaInkEnabled, DEFAULT_ATTR_ALPHA_INK_ENABLED));
+            mRetainedModeEnabled = a.getBoolean(R.styleable.SignaturePad_retainedModeEnabled, DEFAULT_ATTR_RETAINED_MODE_ENABLED);
         } finally {
             a.recycle();
         }
@@ -169,6 +310,15 @@ public class SignaturePad extends View {
      * @param color the color.
      */
     public void setPenColor(int color) {
+        if (color != mPaint.getColor()) {
+            pinRaster();
+            inkChanged();
+        }
+        if (mSurface.isAlphaOnly() && !mSurface.isBlank() && ((color ^ mSurface.getTint()) & 0xFFFFFF) != 0) {
+            // The ink drawn so far keeps its color
+            mSurface.convertToArgb();
+        }
+        mSurface.setTint(color);
         mPaint.setColor(color);
     }
 
@@ -178,7 +328,9 @@ public class SignaturePad extends View {
      * @param minWidth the width in dp.
      */
     public void setMinWidth(float minWidth) {
+        pinRaster();
         mMinWidth = convertDpToPx(minWidth);
+        updateEnginePen();
     }
 
     /**
@@ -187,7 +339,9 @@ public class SignaturePad extends View {
      * @param maxWidth the width in dp.
      */
     public void setMaxWidth(float maxWidth) {
+        pinRaster();
         mMaxWidth = convertDpToPx(maxWidth);
+        updateEnginePen();
     }
 
     /**
@@ -196,22 +350,180 @@ public class SignaturePad extends View {
      * @param velocityFilterWeight the weight.
      */
     public void setVelocityFilterWeight(float velocityFilterWeight) {
+        pinRaster();
         mVelocityFilterWeight = velocityFilterWeight;
+        updateEnginePen();
+    }
+
+    private void updateEnginePen() {
+        mEngine.setPen(mMinWidth, mMaxWidth, mVelocityFilterWeight);
+    }
+
+    /**
+     * The strokes are always rebuilt with the current pen, so the ink drawn so far is kept as
+     * pixels once the pen changes.
+     */
+    private void pinRaster() {
+        if (mStrokes.isEmpty()) {
+            return;
+        }
+        if (mRasterStale) {
+            // Still with the pen the strokes were drawn with
+            ensureSignatureBitmap();
+        }
+        mRasterPinned = true;
+    }
+
+    /**
+     * Set whether the historical samples batched into a move event are drawn as well.
+     * High rate digitizers deliver most of their samples this way.
+     *
+     * @param touchHistoryEnabled true to consume the historical samples.
+     */
+    public void setTouchHistoryEnabled(boolean touchHistoryEnabled) {
+        mTouchHistoryEnabled = touchHistoryEnabled;
+    }
+
+    /**
+     * Set how the segments of the following strokes are drawn.
+     *
+     * @param renderMode {@link #RENDER_MODE_POINTS} or {@link #RENDER_MODE_PATH}.
+     */
+    public void setRenderMode(int renderMode) {
+        if (renderMode != mInkRenderer.getRenderMode()) {
+            pinRaster();
+        }
+        mInkRenderer.setRenderMode(renderMode);
+    }
+
+    /**
+     * Set whether the stroke being drawn goes straight to the hardware accelerated canvas of
+     * the view, and only into the ink bitmap when the finger is lifted. Saves the software
+     * drawing of every move event. Software rendered views keep drawing into the bitmap.
+     *
+     * @param liveInkEnabled true to draw the current stroke on the view canvas.
+     */
+    public void setLiveInkEnabled(boolean liveInkEnabled) {
+        mLiveInkEnabled = liveInkEnabled;
+        if (!liveInkEnabled) {
+            flattenLiveInk();
+            invalidate();
+        }
+    }
+
+    /**
+     * Set how far ahead the stroke being drawn is predicted. The samples the smoothing still
+     * waits for and the predicted continuation are drawn as a provisional tail, replaced as
+     * soon as the real samples arrive, so the ink keeps up with the finger.
+     *
+     * @param milliseconds the time to look ahead, e.g. 16 for one frame, 0 to turn it off.
+     */
+    public void setInkPrediction(int milliseconds) {
+        mInkPredictionMs = Math.max(0, milliseconds);
+    }
+
+    /**
+     * Set the distance below which a sample is dropped, measured to the previous one.
+     * Slow and trembling pens produce many samples that add nothing but work.
+     *
+     * @param minDistance the distance in pixel, 0 to keep every sample.
+     */
+    public void setMinSampleDistance(float minDistance) {
+        mSampleFilter.setMinDistance(minDistance);
+    }
+
+    /**
+     * Set the time below which a sample is dropped, measured to the previous one.
+     *
+     * @param milliseconds the time, 0 to keep every sample.
+     */
+    public void setMinSampleInterval(int milliseconds) {
+        mSampleFilter.setMinTimeDelta(TimeUnit.MILLISECONDS.toNanos(milliseconds));
+    }
+
+    /**
+     * Set the tolerance the stored samples of a finished stroke are simplified with, using the
+     * Ramer-Douglas-Peucker algorithm. Shrinks {@link #writeStrokes(OutputStream)}. The stroke
+     * being drawn is kept apart from the ink, like with {@link #setLiveInkEnabled(boolean)},
+     * and drawn into it from the simplified samples once the finger is lifted, so the pad shows
+     * what the stored strokes rebuild.
+     *
+     * @param tolerance the distance in pixel a removed sample may have from the stroke, 0 for none.
+     */
+    public void setSimplifyTolerance(float tolerance) {
+        mSampleFilter.setSimplifyTolerance(tolerance);
+    }
+
+    /**
+     * Set the size of the tiles the ink is stored in. Tiles are only allocated where there is
+     * ink and only the invalidated ones are drawn, which pays off for large pads. With 0 the
+     * ink is one bitmap of the pad size and {@link #getTransparentSignatureBitmap()} returns it
+     * without a copy. Clears the pad.
+     *
+     * @param tileSize the edge length of the tiles in pixel, e.g. 256, or 0.
+     */
+    public void setInkTileSize(int tileSize) {
+        mSurface.setTileSize(tileSize);
+        clear();
+    }
+
+    /**
+     * Store only the coverage of the ink, in a quarter of the memory, and draw it in the pen
+     * color. The pad switches to full color bitmaps by itself while it shows the hint, text,
+     * an imported bitmap or ink of a previous pen color, and goes back to alpha only when it is
+     * cleared. {@link #getTransparentSignatureBitmap()} then always returns a copy.
+     *
+     * @param enabled whether the ink is stored alpha only.
+     */
+    public void setAlphaInkEnabled(boolean enabled) {
+        mSurface.setAlphaOnly(enabled);
+        invalidate();
+    }
+
+    /**
+     * Keep the strokes as the source of the ink and their pixels only as a cache. The pixels
+     * are allocated once the pad is drawn or exported as a bitmap, dropped while the pad is
+     * hidden or detached and rebuilt from the strokes when it is shown again, so hidden pads
+     * hold no pixel memory. The SVG export and {@link #writeStrokes(OutputStream)} never need
+     * them. Imported bitmaps and ink of a previous pen are kept as pixels until the pad is
+     * cleared. Strokes simplified with {@link #setSimplifyTolerance(float)} are shown from
+     * their simplified samples as soon as they end, so a rebuild does not change them.
+     *
+     * @param enabled whether the pad runs in retained mode.
+     */
+    public void setRetainedModeEnabled(boolean enabled) {
+        mRetainedModeEnabled = enabled;
+        if (!enabled) {
+            ensureSignatureBitmap();
+        }
     }
 
     public void clear() {
         strokeBottom = -1; strokeLeft = -1; strokeRight = -1; strokeTop = -1;
+        mHasStrokeBounds = false;
+        mTextBounds.setEmpty();
         mSvgBuilder.clear();
-        mPoints = new ArrayList<>();
-        mLastVelocity = 0;
-        mLastWidth = (mMinWidth + mMaxWidth) / 2;
-
-        if (mSignatureBitmap != null) {
-            if(!mSignatureBitmap.isRecycled()){
-                mSignatureBitmap.recycle();
-            }
-            mSignatureBitmap = null;
-            ensureSignatureBitmap();
+        mStrokes.clear();
+        mLiveInk.clear();
+        mHasTail = false;
+        mStrokeMarked = false;
+        mStrokeOffSurface = false;
+        updateEnginePen();
+        mEngine.reset();
+        mRasterStale = false;
+        mRasterPinned = false;
+        mPackedRaster = null;
+        mStrokeSpaceWidth = 0;
+        mStrokeSpaceHeight = 0;
+        setInkTransform(1f, 0f, 0f);
+        inkChanged();
+        mExportCache.clear();
+
+        if (mSurfaceReady) {
+            // The tiles go back to the pool, ensureSurface() brings the hint back
+            mSurface.release();
+            mSurfaceReady = false;
+            ensureSurface();
         }
 
         setIsEmpty(true);
@@ -227,10 +539,10 @@ public class SignaturePad extends View {
             return false;
         if(!hintCleared){
             //removes the hint
-            if(mSignatureBitmapCanvas != null) {
-                mSignatureBitmapCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
-            }
+            mSurface.release();
+            mPackedRaster = null;
             hintCleared = true;
+            inkChanged();
         }
         float eventX = event.getX();
         float eventY = event.getY();
@@ -238,21 +550,35 @@ public class SignaturePad extends View {
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:
                 getParent().requestDisallowInterceptTouchEvent(true);
-                mPoints.clear();
+                // A stroke without up event is left over after a cancel
+                flattenLiveInk();
+                mInStroke = true;
+                mStrokeMarked = false;
+                mStrokeOffSurface = true;
+                mInput.startStroke();
                 if (isDoubleClick()) break;
                 mLastTouchX = eventX;
                 mLastTouchY = eventY;
-                addPoint(getNewPoint(eventX, eventY));
+                addPoint(eventX, eventY, TimeUnit.MILLISECONDS.toNanos(event.getEventTime()));
                 if (mOnSignedListener != null) mOnSignedListener.onStartSigning();
 
             case MotionEvent.ACTION_MOVE:
                 resetDirtyRect(eventX, eventY);
-                addPoint(getNewPoint(eventX, eventY));
+                addHistoricalPoints(event);
+                addPoint(eventX, eventY, TimeUnit.MILLISECONDS.toNanos(event.getEventTime()));
                 break;
 
             case MotionEvent.ACTION_UP:
                 resetDirtyRect(eventX, eventY);
-                addPoint(getNewPoint(eventX, eventY));
+                addHistoricalPoints(event);
+                addPoint(eventX, eventY, TimeUnit.MILLISECONDS.toNanos(event.getEventTime()));
+                boolean simplified = mInput.endStroke() > 0;
+                mInStroke = false;
+                if (simplified) {
+                    showSimplifiedInk();
+                } else {
+                    flattenLiveInk();
+                }
                 getParent().requestDisallowInterceptTouchEvent(true);
                 setIsEmpty(false);
                 break;
@@ -261,6 +587,8 @@ public class SignaturePad extends View {
                 return false;
         }
 
+        updateTail();
+
         //invalidate();
         invalidate(
                 (int) (mDirtyRect.left - mMaxWidth),
@@ -268,17 +596,83 @@ public class SignaturePad extends View {
                 (int) (mDirtyRect.right + mMaxWidth),
                 (int) (mDirtyRect.bottom + mMaxWidth));
 
+        // The next batch only needs to cover the way from here on.
+        mLastTouchX = eventX;
+        mLastTouchY = eventY;
+
         return true;
     }
 
+    /**
+     * Predicts the provisional tail of the stroke being drawn. The dirty region covers the
+     * previous tail, so it is erased, and the new one.
+     */
+    private void updateTail() {
+        if (mHasTail) {
+            expandDirtyRect(mTailBounds.left, mTailBounds.top);
+            expandDirtyRect(mTailBounds.right, mTailBounds.bottom);
+        }
+        mHasTail = mInStroke && mInkPredictionMs > 0
+                && mEngine.predictTail(mStrokes, TimeUnit.MILLISECONDS.toNanos(mInkPredictionMs), MAX_PREDICTION_PEN_WIDTHS * mMaxWidth, mTail);
+        if (mHasTail) {
+            for (int i = 0; i < 6; i += 2) {
+                mTail[i] = mTail[i] * mInkScale + mInkOffsetX;
+                mTail[i + 1] = mTail[i + 1] * mInkScale + mInkOffsetY;
+            }
+            mTail[6] *= mInkScale;
+            float radius = mTail[6] / 2 + 1;
+            mTailBounds.set(
+                    Math.min(mTail[0], Math.min(mTail[2], mTail[4])) - radius,
+                    Math.min(mTail[1], Math.min(mTail[3], mTail[5])) - radius,
+                    Math.max(mTail[0], Math.max(mTail[2], mTail[4])) + radius,
+                    Math.max(mTail[1], Math.max(mTail[3], mTail[5])) + radius);
+            expandDirtyRect(mTailBounds.left, mTailBounds.top);
+            expandDirtyRect(mTailBounds.right, mTailBounds.bottom);
+        }
+    }
+
+    /**
+     * Feeds the samples batched into the event since the last one, with their own timestamps,
+     * so fast strokes keep their shape and velocity. The drawn segments grow the dirty region
+     * which is invalidated once for the whole batch.
+     *
+     * @param event the move or up event.
+     */
+    private void addHistoricalPoints(MotionEvent event) {
+        if (!mTouchHistoryEnabled) {
+            return;
+        }
+        final int historySize = event.getHistorySize();
+        for (int i = 0; i < historySize; i++) {
+            float historicalX = event.getHistoricalX(i);
+            float historicalY = event.getHistoricalY(i);
+            expandDirtyRect(historicalX, historicalY);
+            addPoint(historicalX, historicalY, TimeUnit.MILLISECONDS.toNanos(event.getHistoricalEventTime(i)));
+        }
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         //if there is a hint-text set and the canvas is still empty - create it, because this method will add
-        if(this.hintText != null && !this.hintText.isEmpty() && mSignatureBitmapCanvas == null){
+        if((this.hintText != null && !this.hintText.isEmpty() && !mSurfaceReady) || mRasterStale){
             ensureSignatureBitmap();
         }
-        if (mSignatureBitmap != null) {
-            canvas.drawBitmap(mSignatureBitmap, 0, 0, mPaint);
+        // Only the tiles inside the invalidated region
+        mSurface.draw(canvas, mPaint);
+        if (!mLiveInk.isEmpty()) {
+            mLiveInk.draw(canvas, mPaint);
+        }
+        if (mHasTail) {
+            // Provisional, never part of the ink surface
+            Path tail = mTailPathCached;
+            tail.rewind();
+            tail.moveTo(mTail[0], mTail[1]);
+            tail.lineTo(mTail[2], mTail[3]);
+            tail.lineTo(mTail[4], mTail[5]);
+            float originalWidth = mPaint.getStrokeWidth();
+            mPaint.setStrokeWidth(mTail[6]);
+            canvas.drawPath(tail, mPaint);
+            mPaint.setStrokeWidth(originalWidth);
         }
     }
 
@@ -290,19 +684,165 @@ public class SignaturePad extends View {
         return mIsEmpty;
     }
 
+    /**
+     * Returns the SVG document of the signature, built once per version of the ink.
+     */
     public String getSignatureSvg() {
-        int width = getTransparentSignatureBitmap().getWidth();
-        int height = getTransparentSignatureBitmap().getHeight();
-        return mSvgBuilder.build(width, height);
+        ensureInkBounds();
+        mExportCache.validate(mInkVersion);
+        String svg = (String) mExportCache.get("svg");
+        if (svg == null) {
+            svg = mExportCache.put("svg", mSvgBuilder.build(mSurface.getWidth(), mSurface.getHeight()));
+        }
+        return svg;
+    }
+
+    /**
+     * Returns the version of the ink, which changes whenever a stroke, text or bitmap is added
+     * or the pad is cleared or resized. Exports of the same version are identical, the pad
+     * itself reuses its SVG document, trim bounds and encoded exports for them.
+     *
+     * @return the current version.
+     */
+    public int getInkVersion() {
+        return mInkVersion;
+    }
+
+    private void inkChanged() {
+        mInkVersion++;
+    }
+
+    /**
+     * Renders a part of the ink like {@link SignatureExports#render(InkSurface, Rect, int, int, int)}.
+     * Bitmaps are never cached, every caller gets one of its own to release.
+     */
+    private Bitmap renderInk(@Nullable Rect source, int width, int height, int backgroundColor) {
+        ensureSignatureBitmap();
+        return SignatureExports.render(mSurface, source, width, height, backgroundColor);
+    }
+
+    /**
+     * Writes the SVG document of the signature to the given writer without building it as a String.
+     * The writer is neither flushed nor closed.
+     *
+     * @param writer the target writer.
+     * @throws IOException if writing fails.
+     */
+    public void writeSignatureSvg(Writer writer) throws IOException {
+        ensureInkBounds();
+        mSvgBuilder.write(writer, mSurface.getWidth(), mSurface.getHeight());
+    }
+
+    /**
+     * Writes the SVG document of the signature UTF-8 encoded to the given stream.
+     * The stream is flushed but not closed.
+     *
+     * @param stream the target stream, e.g. a file or a request body.
+     * @throws IOException if writing fails.
+     */
+    public void writeSignatureSvg(OutputStream stream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"));
+        writeSignatureSvg(writer);
+        writer.flush();
+    }
+
+    /**
+     * Encodes the signature straight into the given stream, which is flushed but not closed.
+     * The ink is encoded as it is when the export needs neither scaling, trimming nor a
+     * background, otherwise it is drawn once into a pooled bitmap of the output size.
+     *
+     * @param format one of the EXPORT_FORMAT_ constants.
+     * @param quality hint to the compressor, 0-100, ignored by PNG and SVG.
+     * @param width the output width, 0 to derive it from the height keeping the aspect ratio.
+     * @param height the output height, 0 to derive it from the width keeping the aspect ratio.
+     * @param backgroundColor the background, {@link Color#TRANSPARENT} for none.
+     * @param trimBlankSpace whether only the ink and texts are exported, not the whole pad.
+     * @return false if the encoder failed or there is nothing to export when trimming.
+     * @throws IOException if writing fails.
+     */
+    public boolean exportTo(OutputStream stream, int format, int quality, int width, int height,
+                            @ColorInt int backgroundColor, boolean trimBlankSpace) throws IOException {
+        ensureInkBounds();
+        Rect source = mInkBoundsCached;
+        if (trimBlankSpace) {
+            if (!getInkBounds(source)) {
+                return false;
+            }
+        } else {
+            source.set(0, 0, mSurface.getWidth(), mSurface.getHeight());
+        }
+        int[] size = SignatureExports.targetSize(source.width(), source.height(), width, height, new int[2]);
+
+        if (format == EXPORT_FORMAT_SVG) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"));
+            mSvgBuilder.write(writer, size[0], size[1],
+                    source.left, source.top, source.width(), source.height(), backgroundColor);
+            writer.flush();
+            return true;
+        }
+
+        Bitmap.CompressFormat compressFormat;
+        switch (format) {
+            case EXPORT_FORMAT_PNG:
+                compressFormat = Bitmap.CompressFormat.PNG;
+                break;
+            case EXPORT_FORMAT_JPEG:
+                compressFormat = Bitmap.CompressFormat.JPEG;
+                if (Color.alpha(backgroundColor) == 0) {
+                    backgroundColor = Color.WHITE;
+                }
+                break;
+            case EXPORT_FORMAT_WEBP:
+                if (Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+                    throw new IllegalArgumentException("WEBP needs API 14");
+                }
+                compressFormat = Bitmap.CompressFormat.WEBP;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown export format " + format);
+        }
+
+        // Encoded once per version of the ink, saving it again only copies the bytes
+        mExportCache.validate(mInkVersion);
+        String key = "encoded " + format + " " + quality + " " + source.left + "," + source.top + "," + source.right + "," + source.bottom
+                + " " + size[0] + "x" + size[1] + " " + Integer.toHexString(backgroundColor);
+        byte[] encoded = (byte[]) mExportCache.get(key);
+        if (encoded == null) {
+            ensureSignatureBitmap();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Bitmap whole = mSurface.peekBitmap();
+            boolean asIs = whole != null && source.left == 0 && source.top == 0
+                    && size[0] == whole.getWidth() && size[1] == whole.getHeight()
+                    && source.width() == size[0] && source.height() == size[1];
+            boolean result;
+            if (asIs && backgroundColor == Color.TRANSPARENT) {
+                result = whole.compress(compressFormat, quality, out);
+            } else {
+                Bitmap bitmap = SignatureExports.render(mSurface, source, size[0], size[1], backgroundColor);
+                try {
+                    result = bitmap.compress(compressFormat, quality, out);
+                } finally {
+                    BitmapPool.get().release(bitmap);
+                }
+            }
+            if (!result) {
+                return false;
+            }
+            encoded = mExportCache.put(key, out.toByteArray());
+        }
+        stream.write(encoded);
+        stream.flush();
+        return true;
     }
 
+    /**
+     * Returns the picture of the pad on a white background.
+     * The bitmap is new and owned by the caller, who may hand it back with
+     * {@link #releaseBitmap(Bitmap)}.
+     */
     public Bitmap getSignatureBitmap() {
-        Bitmap originalBitmap = getTransparentSignatureBitmap();
-        Bitmap whiteBgBitmap = Bitmap.createBitmap(originalBitmap.getWidth(), originalBitmap.getHeight(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(whiteBgBitmap);
-        canvas.drawColor(Color.WHITE);
-        canvas.drawBitmap(originalBitmap, 0, 0, null);
-        return whiteBgBitmap;
+        ensureInkBounds();
+        return renderInk(null, mSurface.getWidth(), mSurface.getHeight(), Color.WHITE);
     }
 
     /**
@@ -310,67 +850,285 @@ public class SignaturePad extends View {
      *                           small size, 100 meaning compress for max quality. Some
      *                           formats, like PNG which is lossless, will ignore the
      *                           quality setting
+     * @return the scaled picture, a new bitmap owned by the caller, who may hand it back with
+     *         {@link #releaseBitmap(Bitmap)}.
      */
     public Bitmap getCompressedSignatureBitmap(int compressPercentage) {
+        return getFixedSizeSignatureBitmap(getWidth() * SignatureExports.clampPercentage(compressPercentage) / 100);
+    }
 
-        if (compressPercentage < 0) {
-            compressPercentage = 0;
-        } else if (compressPercentage > 100) {
-            compressPercentage = 100;
+    /**
+     * @param deiredWidth Desired width of the bitmap
+     * @return the transparent picture, a new bitmap owned by the caller, who may hand it back with
+     *         {@link #releaseBitmap(Bitmap)}.
+     */
+    public Bitmap getFixedSizeSignatureBitmap(int deiredWidth) {
+        ensureInkBounds();
+        int desiredHeight = (int) (mSurface.getHeight() * deiredWidth / (double) mSurface.getWidth());
+        return getFixedSizeSignatureBitmap(deiredWidth, desiredHeight);
+    }
+
+    /**
+     * @param deiredWidth Desired width of the bitmap
+     * @return the transparent picture, a new bitmap owned by the caller, who may hand it back with
+     *         {@link #releaseBitmap(Bitmap)}.
+     */
+    public Bitmap getFixedSizeSignatureBitmap(int deiredWidth,int desiredHeight) {
+        ensureInkBounds();
+        return renderInk(null, deiredWidth, desiredHeight, Color.TRANSPARENT);
+    }
+
+    /**
+     * Renders the signature once, directly at the given size and onto the given background.
+     *
+     * @param width the width of the bitmap, 0 to derive it from the height keeping the aspect ratio.
+     * @param height the height of the bitmap, 0 to derive it from the width keeping the aspect ratio.
+     * @param backgroundColor the background, {@link Color#TRANSPARENT} for none.
+     * @param trimBlankSpace whether only the ink and texts are exported, not the whole pad.
+     * @return the bitmap or null when trimming an empty pad. The bitmap is new and owned by
+     *         the caller, who may hand it back with {@link #releaseBitmap(Bitmap)}.
+     */
+    public Bitmap getSignatureBitmap(int width, int height, @ColorInt int backgroundColor, boolean trimBlankSpace) {
+        ensureInkBounds();
+        Rect source = null;
+        if (trimBlankSpace) {
+            source = mInkBoundsCached;
+            if (!getInkBounds(source)) {
+                return null;
+            }
+        }
+        int sourceWidth = source != null ? source.width() : mSurface.getWidth();
+        int sourceHeight = source != null ? source.height() : mSurface.getHeight();
+        int[] size = SignatureExports.targetSize(sourceWidth, sourceHeight, width, height, new int[2]);
+        return renderInk(source, size[0], size[1], backgroundColor);
+    }
+
+    /**
+     * Hands a bitmap returned by an export back for reuse by later exports and the pad itself.
+     * The bitmap must not be used afterwards. The live bitmap of the pad is kept.
+     *
+     * @param bitmap the exported bitmap.
+     */
+    public void releaseBitmap(Bitmap bitmap) {
+        if (!mSurface.owns(bitmap)) {
+            BitmapPool.get().release(bitmap);
         }
-        Bitmap originalBitmap = getTransparentSignatureBitmap();
-        int originalWidth = originalBitmap.getWidth();
-        int originalHeight = originalBitmap.getHeight();
+    }
 
-        int targetWidth = originalWidth * compressPercentage / 100; // your arbitrary fixed limit
-        int targetHeight = (int) (originalHeight * targetWidth / (double) originalWidth);
+    /**
+     * Set the executor running the asynchronous exports. By default a single shared
+     * background thread is used.
+     *
+     * @param executor the executor or null for the default one.
+     */
+    public void setExportExecutor(@Nullable Executor executor) {
+        mExportExecutor = executor;
+    }
 
-        Bitmap whiteBgBitmap = Bitmap.createBitmap(originalWidth, originalHeight, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(whiteBgBitmap);
-        canvas.drawColor(Color.WHITE);
-        canvas.drawBitmap(originalBitmap, 0, 0, null);
-        whiteBgBitmap = Bitmap.createScaledBitmap(originalBitmap, targetWidth, targetHeight, true);
-        return whiteBgBitmap;
+    /**
+     * Asynchronous {@link #getSignatureBitmap()}, the rendering runs on the export executor.
+     *
+     * @param listener notified on the main thread, may be null.
+     * @return the future result.
+     */
+    public Future<Bitmap> getSignatureBitmapAsync(@Nullable OnExportListener<Bitmap> listener) {
+        InkSnapshot snapshot = snapshotInk();
+        return submitRender(snapshot, null, snapshot.getWidth(), snapshot.getHeight(), Color.WHITE, listener);
     }
 
     /**
-     * @param deiredWidth Desired width of the bitmap
+     * Asynchronous {@link #getCompressedSignatureBitmap(int)}, the rendering runs on the export executor.
+     *
+     * @param listener notified on the main thread, may be null.
+     * @return the future result.
      */
-    public Bitmap getFixedSizeSignatureBitmap(int deiredWidth) {
+    public Future<Bitmap> getCompressedSignatureBitmapAsync(final int compressPercentage, @Nullable OnExportListener<Bitmap> listener) {
+        InkSnapshot snapshot = snapshotInk();
+        int targetWidth = snapshot.getWidth() * SignatureExports.clampPercentage(compressPercentage) / 100;
+        return submitRender(snapshot, null, targetWidth, SignatureExports.heightForWidth(snapshot.getWidth(), snapshot.getHeight(), targetWidth),
+                Color.TRANSPARENT, listener);
+    }
 
-        Bitmap originalBitmap = getTransparentSignatureBitmap();
-        int originalWidth = originalBitmap.getWidth();
-        int originalHeight = originalBitmap.getHeight();
+    /**
+     * Asynchronous {@link #getFixedSizeSignatureBitmap(int)}, the rendering runs on the export executor.
+     *
+     * @param listener notified on the main thread, may be null.
+     * @return the future result.
+     */
+    public Future<Bitmap> getFixedSizeSignatureBitmapAsync(final int desiredWidth, @Nullable OnExportListener<Bitmap> listener) {
+        InkSnapshot snapshot = snapshotInk();
+        return submitRender(snapshot, null, desiredWidth, SignatureExports.heightForWidth(snapshot.getWidth(), snapshot.getHeight(), desiredWidth),
+                Color.TRANSPARENT, listener);
+    }
 
-        int targetWidth = deiredWidth; // your arbitrary fixed limit
-        int targetHeight = (int) (originalHeight * targetWidth / (double) originalWidth);
+    /**
+     * Asynchronous {@link #getFixedSizeSignatureBitmap(int, int)}, the rendering runs on the export executor.
+     *
+     * @param listener notified on the main thread, may be null.
+     * @return the future result.
+     */
+    public Future<Bitmap> getFixedSizeSignatureBitmapAsync(final int desiredWidth, final int desiredHeight, @Nullable OnExportListener<Bitmap> listener) {
+        return submitRender(snapshotInk(), null, desiredWidth, desiredHeight, Color.TRANSPARENT, listener);
+    }
 
-        Bitmap whiteBgBitmap = Bitmap.createBitmap(originalWidth, originalHeight, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(whiteBgBitmap);
-        canvas.drawColor(Color.WHITE);
-        canvas.drawBitmap(originalBitmap, 0, 0, null);
-        whiteBgBitmap = Bitmap.createScaledBitmap(originalBitmap, targetWidth, targetHeight, true);
-        return whiteBgBitmap;
+    /**
+     * Asynchronous {@link #getTransparentSignatureBitmap(boolean)}. The result is a bitmap of
+     * its own, so later strokes do not change it.
+     *
+     * @param listener notified on the main thread, may be null.
+     * @return the future result, null when trimming an empty pad.
+     */
+    public Future<Bitmap> getTransparentSignatureBitmapAsync(boolean trimBlankSpace, @Nullable OnExportListener<Bitmap> listener) {
+        InkSnapshot snapshot = snapshotInk();
+        if (!trimBlankSpace) {
+            return submitRender(snapshot, null, snapshot.getWidth(), snapshot.getHeight(), Color.TRANSPARENT, listener);
+        }
+        Rect bounds = new Rect();
+        if (!getInkBounds(bounds)) {
+            snapshot.release();
+            return submitRender(null, null, 0, 0, Color.TRANSPARENT, listener);
+        }
+        return submitRender(snapshot, bounds, bounds.width(), bounds.height(), Color.TRANSPARENT, listener);
     }
 
     /**
-     * @param deiredWidth Desired width of the bitmap
+     * Asynchronous {@link #getCompressedTransparentSignatureBitmapTrimOnStrokes(int)}, the
+     * rendering runs on the export executor.
+     *
+     * @param listener notified on the main thread, may be null.
+     * @return the future result, null for an empty pad.
      */
-    public Bitmap getFixedSizeSignatureBitmap(int deiredWidth,int desiredHeight) {
+    public Future<Bitmap> getCompressedTransparentSignatureBitmapTrimOnStrokesAsync(final int compressPercentage, @Nullable OnExportListener<Bitmap> listener) {
+        InkSnapshot snapshot = snapshotInk();
+        Rect bounds = new Rect();
+        if (!getInkBounds(bounds)) {
+            snapshot.release();
+            return submitRender(null, null, 0, 0, Color.TRANSPARENT, listener);
+        }
+        int targetWidth = bounds.width() * SignatureExports.clampPercentage(compressPercentage) / 100;
+        return submitRender(snapshot, bounds, targetWidth, SignatureExports.heightForWidth(bounds.width(), bounds.height(), targetWidth),
+                Color.TRANSPARENT, listener);
+    }
+
+    /**
+     * Asynchronously encodes {@link #getSignatureBitmap()} into the given stream, which is
+     * neither flushed nor closed.
+     *
+     * @param format the format, JPEG has no transparency which is why the white background is used.
+     * @param quality hint to the compressor, 0-100.
+     * @param listener notified on the main thread with the result of {@link Bitmap#compress}, may be null.
+     * @return the future result.
+     */
+    public Future<Boolean> compressSignatureBitmapAsync(final OutputStream stream, final Bitmap.CompressFormat format,
+                                                        final int quality, @Nullable OnExportListener<Boolean> listener) {
+        final InkSnapshot snapshot = snapshotInk();
+        return submitExport(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                Bitmap bitmap;
+                try {
+                    bitmap = snapshot.render(null, snapshot.getWidth(), snapshot.getHeight(), Color.WHITE);
+                } finally {
+                    snapshot.release();
+                }
+                try {
+                    return bitmap.compress(format, quality, stream);
+                } finally {
+                    BitmapPool.get().release(bitmap);
+                }
+            }
+        }, listener);
+    }
+
+    /**
+     * Captures the ink for an asynchronous export, the only work done on the calling thread.
+     * The strokes are copied as samples and rasterized by the export, only content they cannot
+     * rebuild (an imported bitmap, text, the hint or ink of a previous pen) is copied as pixels.
+     */
+    private InkSnapshot snapshotInk() {
+        ensureInkBounds();
+        boolean hint = hintText != null && !hintCleared;
+        boolean text = lastText != null && !mTextBounds.isEmpty();
+        if (mRasterPinned || hint || text) {
+            ensureSignatureBitmap();
+            return InkSnapshot.ofPixels(SignatureExports.copy(mSurface));
+        }
+        SignatureRenderer renderer = new SignatureRenderer(strokesHeader(), mStrokes.copy())
+                .setRenderMode(mInkRenderer.getRenderMode());
+        return InkSnapshot.ofStrokes(renderer, mSurface.getWidth(), mSurface.getHeight());
+    }
 
-        Bitmap originalBitmap = getTransparentSignatureBitmap();
-        int originalWidth = originalBitmap.getWidth();
-        int originalHeight = originalBitmap.getHeight();
+    /**
+     * Renders a part of the snapshot at the given size on the export executor and releases it.
+     *
+     * @param snapshot the ink, null for a null result.
+     */
+    private Future<Bitmap> submitRender(@Nullable final InkSnapshot snapshot, @Nullable final Rect source,
+                                        final int width, final int height, final int backgroundColor,
+                                        @Nullable OnExportListener<Bitmap> listener) {
+        return submitExport(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                if (snapshot == null) {
+                    return null;
+                }
+                try {
+                    return snapshot.render(source, width, height, backgroundColor);
+                } finally {
+                    snapshot.release();
+                }
+            }
+        }, listener);
+    }
 
-        int targetWidth = deiredWidth; // your arbitrary fixed limit
-        int targetHeight = desiredHeight;
+    private <T> Future<T> submitExport(Callable<T> export, @Nullable final OnExportListener<T> listener) {
+        FutureTask<T> future = new FutureTask<T>(export) {
+            @Override
+            protected void done() {
+                if (listener == null || isCancelled()) {
+                    return;
+                }
+                final FutureTask<T> task = this;
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        T result;
+                        try {
+                            result = task.get();
+                        } catch (ExecutionException e) {
+                            listener.onExportFailed(e.getCause());
+                            return;
+                        } catch (InterruptedException e) {
+                            listener.onExportFailed(e);
+                            return;
+                        }
+                        listener.onExported(result);
+                    }
+                });
+            }
+        };
+        getExportExecutor().execute(future);
+        return future;
+    }
 
-        Bitmap whiteBgBitmap = Bitmap.createBitmap(originalWidth, originalHeight, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(whiteBgBitmap);
-        canvas.drawColor(Color.WHITE);
-        canvas.drawBitmap(originalBitmap, 0, 0, null);
-        whiteBgBitmap = Bitmap.createScaledBitmap(originalBitmap, targetWidth, targetHeight, true);
-        return whiteBgBitmap;
+    private Executor getExportExecutor() {
+        if (mExportExecutor != null) {
+            return mExportExecutor;
+        }
+        synchronized (SignaturePad.class) {
+            if (sDefaultExportExecutor == null) {
+                sDefaultExportExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "SignaturePad export");
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.NORM_PRIORITY - 1);
+                        return thread;
+                    }
+                });
+            }
+            return sDefaultExportExecutor;
+        }
     }
 
     public void setSignatureBitmap(final Bitmap signature) {
@@ -394,8 +1152,15 @@ public class SignaturePad extends View {
             Matrix drawMatrix = new Matrix();
             drawMatrix.setRectToRect(tempSrc, tempDst, Matrix.ScaleToFit.CENTER);
 
-            Canvas canvas = new Canvas(mSignatureBitmap);
-            canvas.drawBitmap(signature, drawMatrix, null);
+            drawMatrix.mapRect(tempDst, tempSrc);
+            mSurface.convertToArgb();
+            int tiles = mSurface.lock(tempDst.left, tempDst.top, tempDst.right, tempDst.bottom);
+            for (int i = 0; i < tiles; i++) {
+                mSurface.getCanvas(i).drawBitmap(signature, drawMatrix, null);
+            }
+            addBitmapBounds(tempDst);
+            mRasterPinned = true;
+            inkChanged();
             setIsEmpty(false);
             invalidate();
         }
@@ -414,93 +1179,124 @@ public class SignaturePad extends View {
         }
     }
 
-    public Bitmap getTransparentSignatureBitmap() {
-        ensureSignatureBitmap();
-        return mSignatureBitmap;
+    /**
+     * Writes the raw strokes of the pad with their timestamps and the pen settings in a compact
+     * binary format, see {@link StrokeCodec}. Text and imported bitmaps are not part of it.
+     * The stream is flushed but not closed.
+     *
+     * @param stream the target stream.
+     * @throws IOException if writing fails.
+     */
+    public void writeStrokes(OutputStream stream) throws IOException {
+        StrokeCodec.write(stream, strokesHeader(), mStrokes);
     }
 
-    public Bitmap getTransparentSignatureBitmap(boolean trimBlankSpace) {
+    private StrokeCodec.Header strokesHeader() {
+        StrokeCodec.Header header = new StrokeCodec.Header();
+        header.width = mStrokeSpaceWidth > 0 ? mStrokeSpaceWidth : getWidth();
+        header.height = mStrokeSpaceHeight > 0 ? mStrokeSpaceHeight : getHeight();
+        header.penColor = mPaint.getColor();
+        header.minWidth = mMinWidth;
+        header.maxWidth = mMaxWidth;
+        header.velocityFilterWeight = mVelocityFilterWeight;
+        return header;
+    }
 
-        if (!trimBlankSpace) {
-            return getTransparentSignatureBitmap();
+    /**
+     * Replaces the signature with strokes written by {@link #writeStrokes(OutputStream)} and
+     * draws them again with the pen settings they were recorded with, fitted into the pad if
+     * they were recorded at another size.
+     *
+     * @param stream the source stream, preferably buffered.
+     * @throws IOException if the stream is not a valid stroke stream.
+     */
+    public void readStrokes(InputStream stream) throws IOException {
+        final StrokeStore strokes = new StrokeStore();
+        final StrokeCodec.Header header = StrokeCodec.read(stream, strokes);
+        // View was laid out...
+        if (ViewCompat.isLaidOut(this)) {
+            replayStrokes(header, strokes);
         }
+        // View not laid out yet e.g. called from onCreate(), onRestoreInstanceState()...
+        else {
+            getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
+                @Override
+                public void onGlobalLayout() {
+                    // Remove layout listener...
+                    ViewTreeObserverCompat.removeOnGlobalLayoutListener(getViewTreeObserver(), this);
 
-        ensureSignatureBitmap();
-
-        int imgHeight = mSignatureBitmap.getHeight();
-        int imgWidth = mSignatureBitmap.getWidth();
-
-        int backgroundColor = Color.TRANSPARENT;
-
-        int xMin = Integer.MAX_VALUE,
-                xMax = Integer.MIN_VALUE,
-                yMin = Integer.MAX_VALUE,
-                yMax = Integer.MIN_VALUE;
-
-        boolean foundPixel = false;
-
-        // Find xMin
-        for (int x = 0; x < imgWidth; x++) {
-            boolean stop = false;
-            for (int y = 0; y < imgHeight; y++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
-                    xMin = x;
-                    stop = true;
-                    foundPixel = true;
-                    break;
+                    replayStrokes(header, strokes);
                 }
-            }
-            if (stop)
-                break;
+            });
         }
+    }
 
-        // Image is empty...
-        if (!foundPixel)
-            return null;
+    private void replayStrokes(StrokeCodec.Header header, StrokeStore strokes) {
+        setPen(header);
+        clear();
+        ensureSignatureBitmap();
+        hintCleared = true;
+        mSurface.release();
 
-        // Find yMin
-        for (int y = 0; y < imgHeight; y++) {
-            boolean stop = false;
-            for (int x = xMin; x < imgWidth; x++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
-                    yMin = y;
-                    stop = true;
-                    break;
-                }
-            }
-            if (stop)
-                break;
+        copyStrokes(header, strokes);
+        if (!mStrokes.isEmpty() && header.width > 0 && header.height > 0) {
+            fitInk();
+        }
+        mEngine.render(mStrokes, mCurveListener);
+        if (!mStrokes.isEmpty()) {
+            setIsEmpty(false);
         }
+        invalidate();
+    }
 
-        // Find xMax
-        for (int x = imgWidth - 1; x >= xMin; x--) {
-            boolean stop = false;
-            for (int y = yMin; y < imgHeight; y++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
-                    xMax = x;
-                    stop = true;
-                    break;
-                }
+    /**
+     * Takes the pen of the header, it applies once the engine is reset.
+     */
+    private void setPen(StrokeCodec.Header header) {
+        mPaint.setColor(header.penColor);
+        mSurface.setTint(header.penColor);
+        mMinWidth = Math.round(header.minWidth);
+        mMaxWidth = Math.round(header.maxWidth);
+        mVelocityFilterWeight = header.velocityFilterWeight;
+    }
+
+    /**
+     * Adds the strokes to the cleared pad, without drawing or measuring them.
+     */
+    private void copyStrokes(StrokeCodec.Header header, StrokeStore strokes) {
+        for (int s = 0; s < strokes.strokeCount(); s++) {
+            mStrokes.startStroke();
+            for (int i = strokes.strokeStart(s); i < strokes.strokeEnd(s); i++) {
+                // The samples are copied as they are, the duplicated first one included
+                mStrokes.add(strokes.getX(i), strokes.getY(i), strokes.getTime(i));
             }
-            if (stop)
-                break;
         }
+        if (!mStrokes.isEmpty() && header.width > 0 && header.height > 0) {
+            mStrokeSpaceWidth = header.width;
+            mStrokeSpaceHeight = header.height;
+        }
+    }
 
-        // Find yMax
-        for (int y = imgHeight - 1; y >= yMin; y--) {
-            boolean stop = false;
-            for (int x = xMin; x <= xMax; x++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
-                    yMax = y;
-                    stop = true;
-                    break;
-                }
-            }
-            if (stop)
-                break;
+    /**
+     * Returns the transparent picture of the pad. Without tiles this is the live bitmap of the
+     * pad, which must be treated as read only and is ignored by {@link #releaseBitmap(Bitmap)}
+     * while the pad draws into it. Once the pad is cleared, resized or drops its pixels it
+     * leaves the bitmap to the caller and is never reused or recycled by the pad. With tiles it
+     * is a new copy composed of them, owned by the caller.
+     */
+    public Bitmap getTransparentSignatureBitmap() {
+        ensureSignatureBitmap();
+        Bitmap bitmap = mSurface.handOutBitmap();
+        return bitmap != null ? bitmap : renderInk(null, mSurface.getWidth(), mSurface.getHeight(), Color.TRANSPARENT);
+    }
+
+    public Bitmap getTransparentSignatureBitmap(boolean trimBlankSpace) {
+
+        if (!trimBlankSpace) {
+            return getTransparentSignatureBitmap();
         }
 
-        return Bitmap.createBitmap(mSignatureBitmap, xMin, yMin, xMax - xMin, yMax - yMin);
+        return getTransparentSignatureBitmapTrimOnStrokes();
     }
 
     private boolean isDoubleClick() {
@@ -522,156 +1318,330 @@ public class SignaturePad extends View {
         return false;
     }
 
-    private TimedPoint getNewPoint(float x, float y) {
-        int mCacheSize = mPointsCache.size();
-        TimedPoint timedPoint;
-        if (mCacheSize == 0) {
-            // Cache is empty, create a new point
-            timedPoint = new TimedPoint();
-        } else {
-            // Get point from cache
-            timedPoint = mPointsCache.remove(mCacheSize - 1);
+    private void addPoint(float x, float y, long timestamp) {
+        if (mStrokeSpaceWidth == 0) {
+            mStrokeSpaceWidth = getWidth();
+            mStrokeSpaceHeight = getHeight();
         }
-
-        return timedPoint.set(x, y);
+        // The strokes keep the coordinates they were recorded in
+        mInput.add((x - mInkOffsetX) / mInkScale, (y - mInkOffsetY) / mInkScale, timestamp, mCurveListener);
     }
 
-    private void recyclePoint(TimedPoint point) {
-        mPointsCache.add(point);
+    private void addBezier(Bezier curve, float startWidth, float endWidth) {
+        if (mInStroke && !mStrokeMarked) {
+            markStroke();
+        }
+        inkChanged();
+        mSvgBuilder.append(curve, (startWidth + endWidth) / 2);
+        if (!mRasterPinned && (mRasterStale || (mRetainedModeEnabled && !mSurfaceReady))) {
+            // Only the vector, the raster is rebuilt from the strokes once it is needed
+            mRasterStale = true;
+            mInkRenderer.measure(curve, startWidth, endWidth);
+            RectF bounds = mInkRenderer.getBounds();
+            if (!bounds.isEmpty()) {
+                unionStrokeBounds(bounds.left, bounds.top, bounds.right, bounds.bottom);
+                expandDirtyRect(bounds.left, bounds.top);
+                expandDirtyRect(bounds.right, bounds.bottom);
+            }
+            return;
+        }
+        ensureSurface();
+        if (mRasterStale) {
+            // Pinned pixels dropped under memory pressure come back before drawing onto them
+            rebuildRaster();
+        }
+        RectF area = segmentArea(curve, startWidth, endWidth, mSegmentAreaCached);
+        if (isLiveInk()) {
+            mLiveInk.add(curve, startWidth, endWidth, area, mInkRenderer);
+            expandDirtyRect(area.left, area.top);
+            expandDirtyRect(area.right, area.bottom);
+            return;
+        }
+        drawSegment(curve, startWidth, endWidth, area);
     }
 
-    private void addPoint(TimedPoint newPoint) {
-        mPoints.add(newPoint);
-
-        int pointsCount = mPoints.size();
-        if (pointsCount > 3) {
-
-            ControlTimedPoints tmp = calculateCurveControlPoints(mPoints.get(0), mPoints.get(1), mPoints.get(2));
-            TimedPoint c2 = tmp.c2;
-            recyclePoint(tmp.c1);
-
-            tmp = calculateCurveControlPoints(mPoints.get(1), mPoints.get(2), mPoints.get(3));
-            TimedPoint c3 = tmp.c1;
-            recyclePoint(tmp.c2);
-
-            Bezier curve = mBezierCached.set(mPoints.get(1), c2, c3, mPoints.get(2));
-
-            TimedPoint startPoint = curve.startPoint;
-            TimedPoint endPoint = curve.endPoint;
-
-            float velocity = endPoint.velocityFrom(startPoint);
-            velocity = Float.isNaN(velocity) ? 0.0f : velocity;
-
-            velocity = mVelocityFilterWeight * velocity
-                    + (1 - mVelocityFilterWeight) * mLastVelocity;
-
-            // The new width is a function of the velocity. Higher velocities
-            // correspond to thinner strokes.
-            float newWidth = strokeWidth(velocity);
-
-            // The Bezier's width starts out as last curve's final width, and
-            // gradually changes to the stroke width just calculated. The new
-            // width calculation is based on the velocity between the Bezier's
-            // start and end mPoints.
-            addBezier(curve, mLastWidth, newWidth);
-
-            mLastVelocity = velocity;
-            mLastWidth = newWidth;
-
-            // Remove the first element from the list,
-            // so that we always have no more than 4 mPoints in mPoints array.
-            recyclePoint(mPoints.remove(0));
-
-            recyclePoint(c2);
-            recyclePoint(c3);
+    /**
+     * The segment stays within the hull of its control points, widened by half the stroke.
+     */
+    private static RectF segmentArea(Bezier curve, float startWidth, float endWidth, RectF out) {
+        float radius = Math.max(startWidth, endWidth) / 2 + 1;
+        out.left = Math.min(Math.min(curve.startPoint.x, curve.control1.x), Math.min(curve.control2.x, curve.endPoint.x)) - radius;
+        out.top = Math.min(Math.min(curve.startPoint.y, curve.control1.y), Math.min(curve.control2.y, curve.endPoint.y)) - radius;
+        out.right = Math.max(Math.max(curve.startPoint.x, curve.control1.x), Math.max(curve.control2.x, curve.endPoint.x)) + radius;
+        out.bottom = Math.max(Math.max(curve.startPoint.y, curve.control1.y), Math.max(curve.control2.y, curve.endPoint.y)) + radius;
+        return out;
+    }
 
-        } else if (pointsCount == 1) {
-            // To reduce the initial lag make it work with 3 mPoints
-            // by duplicating the first point
-            TimedPoint firstPoint = mPoints.get(0);
-            mPoints.add(getNewPoint(firstPoint.x, firstPoint.y));
+    private boolean isLiveInk() {
+        if (!mInStroke) {
+            return false;
         }
+        // A stroke to simplify stays apart from the ink, so it can be drawn again simplified
+        return mSampleFilter.getSimplifyTolerance() > 0 || (mLiveInkEnabled
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                && isHardwareAccelerated() && getLayerType() != LAYER_TYPE_SOFTWARE);
     }
 
-    private void addBezier(Bezier curve, float startWidth, float endWidth) {
-        mSvgBuilder.append(curve, (startWidth + endWidth) / 2);
-        ensureSignatureBitmap();
-        float originalWidth = mPaint.getStrokeWidth();
-        float widthDelta = endWidth - startWidth;
-        float drawSteps = (float) Math.floor(curve.length());
-
-        for (int i = 0; i < drawSteps; i++) {
-            // Calculate the Bezier (x, y) coordinate for this step.
-            float t = ((float) i) / drawSteps;
-            float tt = t * t;
-            float ttt = tt * t;
-            float u = 1 - t;
-            float uu = u * u;
-            float uuu = uu * u;
+    /**
+     * Remembers the engine state, the bounds and the SVG before the first segment of the
+     * stroke being drawn.
+     */
+    private void markStroke() {
+        mStrokeMarked = true;
+        mEngine.saveState(mStrokeEngineState);
+        mSvgBuilder.mark();
+        mStrokeStartHasBounds = mHasStrokeBounds;
+        mStrokeStartBounds.set(strokeLeft, strokeTop, strokeRight, strokeBottom);
+    }
 
-            float x = uuu * curve.startPoint.x;
-            x += 3 * uu * t * curve.control1.x;
-            x += 3 * u * tt * curve.control2.x;
-            x += ttt * curve.endPoint.x;
+    /**
+     * Draws the segments retained while the stroke was drawn live into the ink surface.
+     */
+    private void flattenLiveInk() {
+        if (mLiveInk.isEmpty()) {
+            return;
+        }
+        RectF area = mLiveInk.getBounds();
+        expandDirtyRect(area.left, area.top);
+        expandDirtyRect(area.right, area.bottom);
+        for (int i = 0; i < mLiveInk.size(); i++) {
+            Bezier curve = mLiveInk.get(i);
+            float startWidth = mLiveInk.getStartWidth(i);
+            float endWidth = mLiveInk.getEndWidth(i);
+            drawSegment(curve, startWidth, endWidth, segmentArea(curve, startWidth, endWidth, mSegmentAreaCached));
+        }
+        mLiveInk.clear();
+    }
 
-            float y = uuu * curve.startPoint.y;
-            y += 3 * uu * t * curve.control1.y;
-            y += 3 * u * tt * curve.control2.y;
-            y += ttt * curve.endPoint.y;
+    /**
+     * Draws the stroke just ended again from its simplified samples, so the pad shows the ink
+     * a rebuild from the strokes shows and not the samples the simplification removed. The
+     * stroke was kept in the live layer, so only its segments are smoothed and drawn again.
+     */
+    private void showSimplifiedInk() {
+        if (!mStrokeMarked) {
+            flattenLiveInk();
+            return;
+        }
+        if (!mStrokeOffSurface) {
+            // Parts of the stroke went into the pixels meanwhile, e.g. on a resize
+            rebuildSimplifiedInk();
+            return;
+        }
+        // Drawn from the removed samples
+        RectF area = mLiveInk.getBounds();
+        if (!area.isEmpty()) {
+            expandDirtyRect(area.left, area.top);
+            expandDirtyRect(area.right, area.bottom);
+        }
+        mLiveInk.clear();
+        mSvgBuilder.rewind();
+        mHasStrokeBounds = mStrokeStartHasBounds;
+        strokeLeft = mStrokeStartBounds.left;
+        strokeTop = mStrokeStartBounds.top;
+        strokeRight = mStrokeStartBounds.right;
+        strokeBottom = mStrokeStartBounds.bottom;
+        mEngine.restoreState(mStrokeEngineState);
+        mEngine.renderStroke(mStrokes, mStrokes.strokeCount() - 1, mCurveListener);
+    }
 
-            float strokeWidth = startWidth + ttt * widthDelta;
-            // Set the incremental stroke width and draw.
-            mPaint.setStrokeWidth(strokeWidth);
-            setStrokes(x, y, strokeWidth);
-            mSignatureBitmapCanvas.drawPoint(x, y, mPaint);
-            expandDirtyRect(x, y);
+    /**
+     * Redraws all of the ink from the strokes, for a simplified stroke that is partly in the
+     * pixels already. Pinned pixels are never rebuilt from the strokes, the stroke stays there
+     * as drawn.
+     */
+    private void rebuildSimplifiedInk() {
+        if (mRasterPinned) {
+            flattenLiveInk();
+            return;
+        }
+        mLiveInk.clear();
+        inkChanged();
+        strokeBottom = -1; strokeLeft = -1; strokeRight = -1; strokeTop = -1;
+        mHasStrokeBounds = false;
+        mSvgBuilder.clear();
+        // Ends in the state the strokes left the engine in, as a rebuild does
+        mEngine.render(mStrokes, mMeasureListener);
+        if (mSurfaceReady) {
+            mSurface.release();
+            mRasterStale = true;
         }
+        invalidate();
+    }
 
-        mPaint.setStrokeWidth(originalWidth);
+    private void drawSegment(Bezier curve, float startWidth, float endWidth, RectF area) {
+        if (mInStroke) {
+            mStrokeOffSurface = false;
+        }
+        int tiles = mSurface.lock(area.left, area.top, area.right, area.bottom);
+        for (int i = 0; i < tiles; i++) {
+            mInkRenderer.draw(mSurface.getCanvas(i), curve, startWidth, endWidth);
+        }
+        RectF bounds = mInkRenderer.getBounds();
+        if (tiles > 0 && !bounds.isEmpty()) {
+            unionStrokeBounds(bounds.left, bounds.top, bounds.right, bounds.bottom);
+            expandDirtyRect(bounds.left, bounds.top);
+            expandDirtyRect(bounds.right, bounds.bottom);
+        }
     }
 
     /**
+     * Grows the ink bounds by a dot of the given width.
      *
      * @param x
      * @param y
      * @param strokeWidth
+     * @deprecated the pad no longer calls it for every drawn dot, the bounds grow by the
+     * bounds of each segment. Subclasses overriding it to observe the ink are not notified.
      */
+    @Deprecated
     protected void setStrokes(float x, float y, float strokeWidth){
-        if(strokeLeft == -1 || x - strokeWidth < strokeLeft){
-            strokeLeft = x - strokeWidth;
+        // Half the width is covered by the dot, plus one pixel of anti-aliasing
+        float radius = strokeWidth / 2 + 1;
+        unionStrokeBounds(x - radius, y - radius, x + radius, y + radius);
+    }
+
+    private void unionStrokeBounds(float left, float top, float right, float bottom){
+        if(!mHasStrokeBounds){
+            strokeLeft = left;
+            strokeTop = top;
+            strokeRight = right;
+            strokeBottom = bottom;
+            mHasStrokeBounds = true;
+            return;
+        }
+        if(left < strokeLeft){
+            strokeLeft = left;
         }
-        if(strokeRight == -1 || x + strokeWidth > strokeRight){
-            strokeRight = x + strokeWidth;
+        if(right > strokeRight){
+            strokeRight = right;
         }
-        if(strokeTop == -1 || y - strokeWidth < strokeTop){
-            strokeTop = y - strokeWidth;
+        if(top < strokeTop){
+            strokeTop = top;
         }
-        if(strokeBottom == -1 || y + strokeWidth > strokeBottom){
-            strokeBottom = y + strokeWidth;
+        if(bottom > strokeBottom){
+            strokeBottom = bottom;
         }
     }
 
     /**
+     * Scans the given region of the signature bitmap row by row and adds its ink to the bounds.
+     * Only needed for bitmaps drawn onto the pad, strokes and text know their bounds.
      *
-     * @return
+     * @param region the region to scan.
+     */
+    private void addBitmapBounds(RectF region){
+        int left = (int) Math.max(0, Math.floor(region.left));
+        int top = (int) Math.max(0, Math.floor(region.top));
+        int right = (int) Math.min(mSurface.getWidth(), Math.ceil(region.right));
+        int bottom = (int) Math.min(mSurface.getHeight(), Math.ceil(region.bottom));
+        int width = right - left;
+        if(width <= 0 || bottom <= top){
+            return;
+        }
+
+        int[] row = new int[width];
+        int xMin = width, xMax = -1, yMin = -1, yMax = -1;
+        for(int y = top; y < bottom; y++){
+            mSurface.getPixels(row, left, y, width);
+            boolean found = false;
+            for(int x = 0; x < xMin; x++){
+                if(row[x] != Color.TRANSPARENT){
+                    xMin = x;
+                    found = true;
+                    break;
+                }
+            }
+            for(int x = width - 1; x > xMax; x--){
+                if(row[x] != Color.TRANSPARENT){
+                    xMax = x;
+                    found = true;
+                    break;
+                }
+            }
+            if(!found && xMax >= 0){
+                // Only the part between xMin and xMax is left to look at
+                for(int x = xMin; x <= xMax; x++){
+                    if(row[x] != Color.TRANSPARENT){
+                        found = true;
+                        break;
+                    }
+                }
+            }
+            if(found){
+                if(yMin < 0){
+                    yMin = y;
+                }
+                yMax = y;
+            }
+        }
+
+        if(yMin >= 0){
+            unionStrokeBounds(left + xMin, yMin, left + xMax + 1, yMax + 1);
+        }
+    }
+
+    /**
+     * Returns the bounds of the ink (strokes, imported bitmap and static text) clipped to the pad.
+     *
+     * @return left, top, right and bottom of the ink.
      */
     public float[] getSafeStrokes(){
         float strokes[] = new float[4];
-        ensureSignatureBitmap();
-        int imgHeight = mSignatureBitmap.getHeight();
-        int imgWidth = mSignatureBitmap.getWidth();
+        ensureInkBounds();
+        int imgHeight = mSurface.getHeight();
+        int imgWidth = mSurface.getWidth();
+
+        float left = strokeLeft, top = strokeTop, right = strokeRight, bottom = strokeBottom;
+        if(!mTextBounds.isEmpty()){
+            if(mHasStrokeBounds){
+                left = Math.min(left, mTextBounds.left);
+                top = Math.min(top, mTextBounds.top);
+                right = Math.max(right, mTextBounds.right);
+                bottom = Math.max(bottom, mTextBounds.bottom);
+            }
+            else{
+                left = mTextBounds.left;
+                top = mTextBounds.top;
+                right = mTextBounds.right;
+                bottom = mTextBounds.bottom;
+            }
+        }
 
-        strokes[0] = Math.max(0, strokeLeft);
-        strokes[1] = Math.max(0, strokeTop);
-        strokes[2] = Math.min(imgWidth, strokeRight);
-        strokes[3] = Math.min(imgHeight, strokeBottom);
+        strokes[0] = Math.max(0, left);
+        strokes[1] = Math.max(0, top);
+        strokes[2] = Math.min(imgWidth, right);
+        strokes[3] = Math.min(imgHeight, bottom);
         return strokes;
     }
 
+    /**
+     * Returns the pixel bounds of the ink.
+     *
+     * @param bounds receives the bounds.
+     * @return false if there is no ink on the pad.
+     */
+    private boolean getInkBounds(Rect bounds){
+        if(mTrimBoundsVersion != mInkVersion){
+            mHasTrimBounds = false;
+            if(mHasStrokeBounds || !mTextBounds.isEmpty()){
+                float strokes[] = getSafeStrokes();
+                mTrimBoundsCached.set((int) Math.floor(strokes[0]), (int) Math.floor(strokes[1]),
+                        (int) Math.ceil(strokes[2]), (int) Math.ceil(strokes[3]));
+                mHasTrimBounds = !mTrimBoundsCached.isEmpty();
+            }
+            // getSafeStrokes() may flatten the live ink and change the version
+            mTrimBoundsVersion = mInkVersion;
+        }
+        bounds.set(mTrimBoundsCached);
+        return mHasTrimBounds;
+    }
+
     /**
      *
      * @param compressPercentage
-     * @return
+     * @return the scaled picture cropped to the ink or null if the pad is empty. The bitmap is
+     *         new and owned by the caller, who may hand it back with {@link #releaseBitmap(Bitmap)}.
      */
     public Bitmap getCompressedTransparentSignatureBitmapTrimOnStrokes(int compressPercentage){
         if (compressPercentage < 0) {
@@ -679,96 +1649,30 @@ public class SignaturePad extends View {
         } else if (compressPercentage > 100) {
             compressPercentage = 100;
         }
-        Bitmap originalBitmap = getTransparentSignatureBitmapTrimOnStrokes();
-        int originalWidth = originalBitmap.getWidth();
-        int originalHeight = originalBitmap.getHeight();
-
-        int targetWidth = originalWidth * compressPercentage / 100; // your arbitrary fixed limit
-        int targetHeight = (int) (originalHeight * targetWidth / (double) originalWidth);
-
-        Bitmap scaledBitmap = Bitmap.createScaledBitmap(originalBitmap, targetWidth, targetHeight, true);
-        originalBitmap.recycle();
-        return scaledBitmap;
+        ensureInkBounds();
+        Rect bounds = mInkBoundsCached;
+        if (!getInkBounds(bounds)) {
+            return null;
+        }
+        int targetWidth = bounds.width() * compressPercentage / 100; // your arbitrary fixed limit
+        int targetHeight = (int) (bounds.height() * targetWidth / (double) bounds.width());
+        // Scaled straight out of the ink, without cropping it first
+        return renderInk(bounds, targetWidth, targetHeight, Color.TRANSPARENT);
     }
 
     /**
-     * Method returns the transparent picture
-     * @return
+     * Method returns the transparent picture cropped to the ink.
+     * The bounds are kept up to date while drawing, so no pixel has to be scanned.
+     * @return the cropped picture or null if the pad is empty. The bitmap is new and owned by
+     *         the caller, who may hand it back with {@link #releaseBitmap(Bitmap)}.
      */
     public Bitmap getTransparentSignatureBitmapTrimOnStrokes() {
-        ensureSignatureBitmap();
-        int imgHeight = mSignatureBitmap.getHeight();
-        int imgWidth = mSignatureBitmap.getWidth();
-        int backgroundColor = Color.TRANSPARENT;
-        int xMin = Integer.MAX_VALUE,
-                xMax = Integer.MIN_VALUE,
-                yMin = Integer.MAX_VALUE,
-                yMax = Integer.MIN_VALUE;
-
-        boolean foundPixel = false;
-        float strokes[] = getSafeStrokes();
-        // Find xMin
-        for (int x = (int)strokes[0]; x < imgWidth; x++) {
-            boolean stop = false;
-            for (int y = 0; y < imgHeight; y++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
-                    xMin = x;
-                    stop = true;
-                    foundPixel = true;
-                    break;
-                }
-            }
-            if (stop)
-                break;
-        }
-
-        // Image is empty...
-        if (!foundPixel)
+        ensureInkBounds();
+        Rect bounds = mInkBoundsCached;
+        if (!getInkBounds(bounds)) {
             return null;
-
-        // Find yMin
-        for (int y = (int)strokes[1]; y < imgHeight; y++) {
-            boolean stop = false;
-            for (int x = xMin; x < imgWidth; x++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
-                    yMin = y;
-                    stop = true;
-                    break;
-                }
-            }
-            if (stop)
-                break;
         }
-
-        // Find xMax
-        for (int x = (int)strokes[2] - 1; x >= xMin; x--) {
-            boolean stop = false;
-            for (int y = yMin; y < imgHeight; y++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
-                    xMax = x;
-                    stop = true;
-                    break;
-                }
-            }
-            if (stop)
-                break;
-        }
-
-        // Find yMax
-        for (int y = (int)strokes[3] - 1; y >= yMin; y--) {
-            boolean stop = false;
-            for (int x = xMin; x <= xMax; x++) {
-                if (mSignatureBitmap.getPixel(x, y) != backgroundColor) {
-                    yMax = y;
-                    stop = true;
-                    break;
-                }
-            }
-            if (stop)
-                break;
-        }
-
-        return Bitmap.createBitmap(mSignatureBitmap, xMin, yMin, xMax - xMin + 1, yMax - yMin + 1);
+        return renderInk(bounds, bounds.width(), bounds.height(), Color.TRANSPARENT);
     }
 
     /**
@@ -822,37 +1726,6 @@ public class SignaturePad extends View {
     }
 
 
-    private ControlTimedPoints calculateCurveControlPoints(TimedPoint s1, TimedPoint s2, TimedPoint s3) {
-        float dx1 = s1.x - s2.x;
-        float dy1 = s1.y - s2.y;
-        float dx2 = s2.x - s3.x;
-        float dy2 = s2.y - s3.y;
-
-        float m1X = (s1.x + s2.x) / 2.0f;
-        float m1Y = (s1.y + s2.y) / 2.0f;
-        float m2X = (s2.x + s3.x) / 2.0f;
-        float m2Y = (s2.y + s3.y) / 2.0f;
-
-        float l1 = (float) Math.sqrt(dx1 * dx1 + dy1 * dy1);
-        float l2 = (float) Math.sqrt(dx2 * dx2 + dy2 * dy2);
-
-        float dxm = (m1X - m2X);
-        float dym = (m1Y - m2Y);
-        float k = l2 / (l1 + l2);
-        if (Float.isNaN(k)) k = 0.0f;
-        float cmX = m2X + dxm * k;
-        float cmY = m2Y + dym * k;
-
-        float tx = s2.x - cmX;
-        float ty = s2.y - cmY;
-
-        return mControlTimedPointsCached.set(getNewPoint(m1X + tx, m1Y + ty), getNewPoint(m2X + tx, m2Y + ty));
-    }
-
-    private float strokeWidth(float velocity) {
-        return Math.max(mMaxWidth / (velocity + 1), mMinWidth);
-    }
-
     /**
      * Called when replaying history to ensure the dirty region includes all
      * mPoints.
@@ -900,59 +1773,555 @@ public class SignaturePad extends View {
     }
 
     /**
-     * Method create the transparent image + canvas and also adds the hint text + border on it
+     * Makes sure the ink surface holds everything drawn so far, the live stroke included.
+     * A discarded raster is rebuilt from the strokes.
      */
     private void ensureSignatureBitmap() {
-        if (mSignatureBitmap == null) {
-            mSignatureBitmap = Bitmap.createBitmap(getWidth(), getHeight(),
-                    Bitmap.Config.ARGB_8888);
-            mSignatureBitmapCanvas = new Canvas(mSignatureBitmap);
-            hintCleared = false;
-            if(this.hintText != null){
-                Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-                paint.setColor(Color.BLACK);
-                paint.setTextSize(HINT_TEXT_SIZE_START * getResources().getDisplayMetrics().density);
-                float textLen = paint.measureText(hintText);
-                int tmpSize = HINT_TEXT_SIZE_START;
-                int width = (int) (getWidth() * 0.85f);
-                while(textLen > width){
-                    tmpSize--;
-                    if(tmpSize == 0){
-                        //never 0 as size, take at least 1
-                        paint.setTextSize(1 * getResources().getDisplayMetrics().density);
-                        break;
+        ensureSurface();
+        if (mRasterStale && mSurfaceReady) {
+            rebuildRaster();
+        }
+        flattenLiveInk();
+    }
+
+    /**
+     * Makes sure the ink bounds cover everything drawn so far, without rebuilding a discarded
+     * raster. Enough for the vector exports.
+     */
+    private void ensureInkBounds() {
+        ensureSurface();
+        flattenLiveInk();
+    }
+
+    /**
+     * Draws the hint, the strokes and the text onto the released surface again, or restores
+     * the packed pixels of a pinned surface.
+     */
+    private void rebuildRaster() {
+        mRasterStale = false;
+        if (mPackedRaster != null) {
+            mSurface.unpack(mPackedRaster);
+            mPackedRaster = null;
+            return;
+        }
+        mSurface.release();
+        if (!hintCleared) {
+            drawHint();
+        }
+        // Ends in the state the strokes left the engine in, the stroke in progress goes on
+        mEngine.render(mStrokes, mRasterListener);
+        if (lastText != null && !mTextBounds.isEmpty()) {
+            lastText.draw();
+        }
+    }
+
+    /**
+     * Drops the pixels of the pad, they are rebuilt once they are needed again.
+     *
+     * @param pack whether pixels the strokes cannot rebuild are dropped too, they are kept
+     *             packed then.
+     * @return false if the pixels were kept.
+     */
+    private boolean discardRaster(boolean pack) {
+        if (mRasterPinned && !pack) {
+            return false;
+        }
+        if (mSurfaceReady && !mRasterStale) {
+            // Its bounds are added as it is drawn
+            flattenLiveInk();
+            if (mRasterPinned) {
+                mPackedRaster = mSurface.pack();
+            }
+            mSurface.release();
+            mRasterStale = true;
+        }
+        return true;
+    }
+
+    /**
+     * Gives memory back under pressure, for the levels of
+     * {@link ComponentCallbacks2#onTrimMemory(int)}. The pad registers for them itself while it
+     * is attached on API 14 and newer, older apps can forward them.
+     *
+     * Once the system runs low on memory the pooled bitmaps are freed. Hidden pads, and every
+     * pad once the UI is hidden, drop their pixels too, whatever the retained mode. They are
+     * rebuilt from the strokes when they are needed again, pixels the strokes cannot rebuild
+     * are kept deflated meanwhile, so no ink is lost.
+     *
+     * @param level the trim level.
+     */
+    public void onTrimMemory(int level) {
+        if (level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN || !isShown()) {
+            discardRaster(true);
+        }
+        mExportCache.clear();
+        // The tiles just released included
+        BitmapPool.get().trimTo(0);
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        if (visibility != VISIBLE && mRetainedModeEnabled) {
+            discardRaster(false);
+        }
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        if (visibility != VISIBLE && mRetainedModeEnabled) {
+            discardRaster(false);
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH && mMemoryCallbacks == null) {
+            mMemoryCallbacks = new MemoryCallbacks();
+            getContext().getApplicationContext().registerComponentCallbacks(mMemoryCallbacks);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mMemoryCallbacks != null) {
+            // The application context outlives the pad
+            getContext().getApplicationContext().unregisterComponentCallbacks(mMemoryCallbacks);
+            mMemoryCallbacks = null;
+        }
+        if (mRetainedModeEnabled) {
+            discardRaster(false);
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (oldw > 0 && oldh > 0 && (w != oldw || h != oldh) && (mSurfaceReady || !mStrokes.isEmpty())) {
+            refitInk(oldw, oldh);
+        }
+    }
+
+    /**
+     * Renders the ink again for the new pad size. The strokes are fitted into the pad and drawn
+     * crisply from their samples. Pixels they cannot rebuild, imported or of a previous pen,
+     * are scaled like {@link #setSignatureBitmap(Bitmap)} does, the strokes along with them.
+     */
+    private void refitInk(int oldWidth, int oldHeight) {
+        flattenLiveInk();
+        // The SVG and the bounds are measured again, with all of the stroke being drawn
+        mStrokeOffSurface = false;
+        mHasTail = false;
+        inkChanged();
+        boolean pinned = mRasterPinned && mSurfaceReady;
+        Matrix matrix = new Matrix();
+        matrix.setRectToRect(new RectF(0, 0, oldWidth, oldHeight), new RectF(0, 0, getWidth(), getHeight()), Matrix.ScaleToFit.CENTER);
+        Bitmap pixels = null;
+        if (pinned) {
+            ensureSignatureBitmap();
+            pixels = SignatureExports.copy(mSurface);
+            float scale = Math.min(getWidth() / (float) oldWidth, getHeight() / (float) oldHeight);
+            setInkTransform(mInkScale * scale,
+                    mInkOffsetX * scale + (getWidth() - oldWidth * scale) / 2,
+                    mInkOffsetY * scale + (getHeight() - oldHeight * scale) / 2);
+        } else {
+            fitInk();
+        }
+
+        RectF inkBounds = new RectF(strokeLeft, strokeTop, strokeRight, strokeBottom);
+        boolean hadInkBounds = mHasStrokeBounds;
+        RectF textBounds = new RectF(mTextBounds);
+        strokeBottom = -1; strokeLeft = -1; strokeRight = -1; strokeTop = -1;
+        mHasStrokeBounds = false;
+        mTextBounds.setEmpty();
+        mSvgBuilder.clear();
+        // Ends in the state the strokes left the engine in, as a rebuild does
+        mEngine.render(mStrokes, mMeasureListener);
+
+        if (mSurfaceReady) {
+            mSurface.release();
+            mSurface.setSize(getWidth(), getHeight());
+            mRasterStale = !pinned;
+        }
+        if (pinned) {
+            // The text is part of the pixels
+            mSurface.convertToArgb();
+            int tiles = mSurface.lockAll();
+            for (int i = 0; i < tiles; i++) {
+                mSurface.getCanvas(i).drawBitmap(pixels, matrix, null);
+            }
+            BitmapPool.get().release(pixels);
+            if (hadInkBounds) {
+                matrix.mapRect(inkBounds);
+                unionStrokeBounds(inkBounds.left, inkBounds.top, inkBounds.right, inkBounds.bottom);
+            }
+            matrix.mapRect(mTextBounds, textBounds);
+        } else if (lastText != null && !textBounds.isEmpty()) {
+            lastText.relayout();
+        }
+        invalidate();
+    }
+
+    /**
+     * Fits the strokes into the pad, centered and keeping the aspect ratio they were recorded
+     * with.
+     */
+    private void fitInk() {
+        if (mStrokeSpaceWidth <= 0 || mStrokeSpaceHeight <= 0 || getWidth() <= 0 || getHeight() <= 0) {
+            setInkTransform(1f, 0f, 0f);
+            return;
+        }
+        float scale = Math.min(getWidth() / (float) mStrokeSpaceWidth, getHeight() / (float) mStrokeSpaceHeight);
+        setInkTransform(scale,
+                (getWidth() - mStrokeSpaceWidth * scale) / 2,
+                (getHeight() - mStrokeSpaceHeight * scale) / 2);
+    }
+
+    private void setInkTransform(float scale, float offsetX, float offsetY) {
+        mInkScale = scale;
+        mInkOffsetX = offsetX;
+        mInkOffsetY = offsetY;
+        mEngine.setTransform(scale, offsetX, offsetY);
+    }
+
+    /**
+     * Saves the strokes, simplified if they exceed 64 KB, so the pad draws them again crisply
+     * after e.g. a rotation. Pixels the strokes cannot rebuild, i.e. an imported bitmap, text
+     * or ink of a previous pen, color or render mode, are saved as well, as a PNG of the pad
+     * scaled down until it fits 128 KB, and come back as pinned pixels. Strokes are the exact
+     * source, the saved pixels may lose detail on large pads.
+     */
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        SavedState state = new SavedState(super.onSaveInstanceState());
+        state.strokes = saveStrokes();
+        boolean text = lastText != null && !mTextBounds.isEmpty();
+        if ((mRasterPinned || text) && !isEmpty()) {
+            state.raster = saveRaster();
+            state.width = mSurface.getWidth();
+            state.height = mSurface.getHeight();
+            state.inkScale = mInkScale;
+            state.inkOffsetX = mInkOffsetX;
+            state.inkOffsetY = mInkOffsetY;
+        }
+        return state;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        final SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        if (savedState.raster != null) {
+            // View was laid out...
+            if (ViewCompat.isLaidOut(this)) {
+                restoreRaster(savedState);
+            }
+            // View not laid out yet, as usual when the state is restored
+            else {
+                getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
+                    @Override
+                    public void onGlobalLayout() {
+                        // Remove layout listener...
+                        ViewTreeObserverCompat.removeOnGlobalLayoutListener(getViewTreeObserver(), this);
+
+                        restoreRaster(savedState);
                     }
-                    paint.setTextSize(tmpSize * getResources().getDisplayMetrics().density);
-                    textLen = paint.measureText(hintText);
+                });
+            }
+        } else if (savedState.strokes != null) {
+            try {
+                readStrokes(new ByteArrayInputStream(savedState.strokes));
+            } catch (IOException e) {
+                // Written by saveStrokes(), only a corrupted state ends here
+            }
+        }
+    }
+
+    /**
+     * Brings back the saved pixels as pinned ones, fitted into the pad like a bitmap of
+     * {@link #setSignatureBitmap(Bitmap)}, and the strokes under them without drawing them.
+     */
+    private void restoreRaster(SavedState state) {
+        Bitmap raster = BitmapFactory.decodeByteArray(state.raster, 0, state.raster.length);
+        if (raster == null) {
+            return;
+        }
+        StrokeStore strokes = new StrokeStore();
+        StrokeCodec.Header header = null;
+        if (state.strokes != null) {
+            try {
+                header = StrokeCodec.read(new ByteArrayInputStream(state.strokes), strokes);
+            } catch (IOException e) {
+                // Written by saveStrokes(), only a corrupted state ends here
+            }
+        }
+        if (header != null) {
+            setPen(header);
+        }
+        // Clears the pad and resets the engine with the pen
+        setSignatureBitmap(raster);
+        raster.recycle();
+        if (header == null || strokes.isEmpty() || state.width <= 0 || state.height <= 0) {
+            return;
+        }
+        copyStrokes(header, strokes);
+        // Where the pixels went, as refitInk() moves pinned ink
+        float scale = Math.min(getWidth() / (float) state.width, getHeight() / (float) state.height);
+        setInkTransform(state.inkScale * scale,
+                state.inkOffsetX * scale + (getWidth() - state.width * scale) / 2,
+                state.inkOffsetY * scale + (getHeight() - state.height * scale) / 2);
+        mSvgBuilder.clear();
+        mEngine.render(mStrokes, mMeasureListener);
+    }
+
+    /**
+     * Encodes the strokes for the saved state. Beyond the budget they are simplified with
+     * growing tolerances, until they fit or simplifying removes no more samples. The most
+     * simplified strokes are saved then, even beyond the budget, rather than none.
+     *
+     * @return the encoded strokes, null if there are none.
+     */
+    @Nullable
+    private byte[] saveStrokes() {
+        if (mStrokes.isEmpty()) {
+            return null;
+        }
+        StrokeCodec.Header header = strokesHeader();
+        StrokeStore strokes = mStrokes;
+        float tolerance = 0;
+        for (int attempt = 0; ; attempt++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                StrokeCodec.write(out, header, strokes);
+            } catch (IOException e) {
+                // Written to memory only
+                return null;
+            }
+            if (out.size() <= MAX_SAVED_STROKES_BYTES) {
+                return out.toByteArray();
+            }
+            tolerance = attempt < SAVED_STROKES_TOLERANCES_PX.length ? SAVED_STROKES_TOLERANCES_PX[attempt] : tolerance * 2;
+            StrokeStore simplified = simplifiedStrokes(tolerance);
+            if (simplified.size() == strokes.size()) {
+                // Down to the samples simplifying always keeps
+                return out.toByteArray();
+            }
+            strokes = simplified;
+        }
+    }
+
+    /**
+     * Encodes the pixels of the pad as a PNG, halving its size until it fits the budget.
+     *
+     * @return the PNG, null if even the smallest one does not fit.
+     */
+    @Nullable
+    private byte[] saveRaster() {
+        ensureSignatureBitmap();
+        int width = mSurface.getWidth();
+        int height = mSurface.getHeight();
+        while (width > 0 && height > 0) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Bitmap bitmap = SignatureExports.render(mSurface, null, width, height, Color.TRANSPARENT);
+            try {
+                bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+            } finally {
+                BitmapPool.get().release(bitmap);
+            }
+            if (out.size() <= MAX_SAVED_RASTER_BYTES) {
+                return out.toByteArray();
+            }
+            width /= 2;
+            height /= 2;
+        }
+        return null;
+    }
+
+    private StrokeStore simplifiedStrokes(float tolerance) {
+        SampleFilter filter = new SampleFilter().setSimplifyTolerance(tolerance);
+        StrokeStore strokes = new StrokeStore();
+        for (int s = 0; s < mStrokes.strokeCount(); s++) {
+            strokes.startStroke();
+            for (int i = mStrokes.strokeStart(s); i < mStrokes.strokeEnd(s); i++) {
+                strokes.add(mStrokes.getX(i), mStrokes.getY(i), mStrokes.getTime(i));
+            }
+            // Only the current stroke is simplified
+            filter.simplify(strokes);
+        }
+        return strokes;
+    }
+
+    /**
+     * The strokes of the pad in the compact {@link StrokeCodec} format, a few bytes per sample
+     * instead of a bitmap of the pad. Text and imported bitmaps are not part of it.
+     */
+    static class SavedState extends BaseSavedState {
+        byte[] strokes;
+        // PNG of the pad when it holds pixels the strokes cannot rebuild, and where the
+        // strokes were on it
+        byte[] raster;
+        int width;
+        int height;
+        float inkScale;
+        float inkOffsetX;
+        float inkOffsetY;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel in) {
+            super(in);
+            strokes = in.createByteArray();
+            raster = in.createByteArray();
+            width = in.readInt();
+            height = in.readInt();
+            inkScale = in.readFloat();
+            inkOffsetX = in.readFloat();
+            inkOffsetY = in.readFloat();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeByteArray(strokes);
+            out.writeByteArray(raster);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeFloat(inkScale);
+            out.writeFloat(inkOffsetX);
+            out.writeFloat(inkOffsetY);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
+    /**
+     * Forwards the memory pressure of the system, only loaded on API 14 and newer.
+     */
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private class MemoryCallbacks implements ComponentCallbacks2 {
+        @Override
+        public void onTrimMemory(int level) {
+            SignaturePad.this.onTrimMemory(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            SignaturePad.this.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    }
+
+    /**
+     * Method sizes the transparent ink surface and also adds the hint text + border on it
+     */
+    private void ensureSurface() {
+        if (!mSurfaceReady && getWidth() > 0 && getHeight() > 0) {
+            if (mSurface.getWidth() != getWidth() || mSurface.getHeight() != getHeight()) {
+                mSurface.setSize(getWidth(), getHeight());
+            }
+            mSurfaceReady = true;
+            hintCleared = false;
+            if (mRetainedModeEnabled) {
+                // The hint is drawn with the rest once the pixels are needed
+                mRasterStale = true;
+            } else {
+                drawHint();
+            }
+        }
+    }
+
+    /**
+     * Draws the hint text and its border onto the surface.
+     */
+    private void drawHint() {
+        if(this.hintText != null){
+            Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+            paint.setColor(Color.BLACK);
+            paint.setTextSize(HINT_TEXT_SIZE_START * getResources().getDisplayMetrics().density);
+            float textLen = paint.measureText(hintText);
+            int tmpSize = HINT_TEXT_SIZE_START;
+            int width = (int) (getWidth() * 0.85f);
+            while(textLen > width){
+                tmpSize--;
+                if(tmpSize == 0){
+                    //never 0 as size, take at least 1
+                    paint.setTextSize(1 * getResources().getDisplayMetrics().density);
+                    break;
+                }
+                paint.setTextSize(tmpSize * getResources().getDisplayMetrics().density);
+                textLen = paint.measureText(hintText);
+            }
+            float textHeight = paint.descent() - paint.ascent();
+            float x = getWidth() / 2 - textLen / 2; //default horizontal is center
+            float y = getHeight() / 2 + (textHeight / 2);
+            // The hint has its own colors. Only the tiles under the text and the four corner
+            // marks are allocated, so a hint does not cost a full pad of tiles until the first touch
+            mSurface.convertToArgb();
+            // With a line of room for glyphs reaching out of the text, as for the static text
+            int tiles = mSurface.lock(x - textHeight, y - 2 * textHeight, x + textLen + textHeight, y + textHeight);
+            for (int i = 0; i < tiles; i++) {
+                mSurface.getCanvas(i).drawText(hintText, x, y, paint);
+            }
+            int horizontalPadding = convertPxToDp(30);//(int) (getWidth() * 0.05f);
+            int verticalPadding = convertPxToDp(30);//convertDpToPx(20);//(int) (getHeight() * 0.05f);
+            int horizontalLength = (int) (getWidth() * 0.2f);
+            int verticalLength = (int) (getHeight() * 0.2f);
+            float left = horizontalPadding;
+            float top = verticalPadding;
+            float right = getWidth() - horizontalPadding;
+            float bottom = getHeight() - verticalPadding;
+            // Start, corner and end of each mark
+            float[][] corners = {
+                    {left, top + verticalLength, left, top, left + horizontalLength, top}, //left upper corner
+                    {right - horizontalLength, top, right, top, right, top + verticalLength}, //right upper corner
+                    {right, bottom - verticalLength, right, bottom, right - horizontalLength, bottom}, //right lower corner
+                    {left + horizontalLength, bottom, left, bottom, left, bottom - verticalLength}, //left lower corner
+            };
+            Paint pathPaint = new Paint();
+            pathPaint.setStrokeWidth(convertPxToDp(15));
+            //rect.setColor(Color.rgb(255,0,0));
+            pathPaint.setColor(Color.BLACK);
+            pathPaint.setStyle(Paint.Style.STROKE);
+            pathPaint.setPathEffect(new DashPathEffect(new float[]{20, 20,}, 0));
+            float margin = pathPaint.getStrokeWidth() / 2 + 1;
+            Path path = new Path();
+            for (float[] corner : corners) {
+                // A contour each, the dashes start on every mark as they did in a single path
+                path.rewind();
+                path.moveTo(corner[0], corner[1]);
+                path.lineTo(corner[2], corner[3]);
+                path.lineTo(corner[4], corner[5]);
+                tiles = mSurface.lock(
+                        Math.min(corner[0], corner[4]) - margin, Math.min(corner[1], corner[5]) - margin,
+                        Math.max(corner[0], corner[4]) + margin, Math.max(corner[1], corner[5]) + margin);
+                for (int i = 0; i < tiles; i++) {
+                    mSurface.getCanvas(i).drawPath(path, pathPaint);
                 }
-                float textHeight = paint.descent() - paint.ascent();
-                float x = getWidth() / 2 - textLen / 2; //default horizontal is center
-                float y = getHeight() / 2 + (textHeight / 2);
-                mSignatureBitmapCanvas.drawText(hintText, x, y, paint);
-                int horizontalPadding = convertPxToDp(30);//(int) (getWidth() * 0.05f);
-                int verticalPadding = convertPxToDp(30);//convertDpToPx(20);//(int) (getHeight() * 0.05f);
-                int horizontalLength = (int) (getWidth() * 0.2f);
-                int verticalLength = (int) (getHeight() * 0.2f);
-                Path path = new Path();
-                path.moveTo(horizontalPadding, verticalPadding + verticalLength);
-                path.lineTo(horizontalPadding, verticalPadding); //left upper corner
-                path.lineTo(horizontalPadding + horizontalLength, verticalPadding);
-                path.moveTo(getWidth() - horizontalPadding - horizontalLength, verticalPadding);
-                path.lineTo(getWidth() - horizontalPadding, verticalPadding); //right upper corner
-                path.lineTo(getWidth() - horizontalPadding, verticalPadding + verticalLength);
-                path.moveTo(getWidth() - horizontalPadding, getHeight() - verticalPadding - verticalLength);
-                path.lineTo(getWidth() - horizontalPadding, getHeight() - verticalPadding); //right lower corner
-                path.lineTo(getWidth() - horizontalPadding- horizontalLength, getHeight() - verticalPadding);
-                path.moveTo(horizontalPadding + horizontalLength, getHeight() - verticalPadding);
-                path.lineTo(horizontalPadding, getHeight() - verticalPadding);
-                path.lineTo(horizontalPadding, getHeight() - verticalPadding - verticalLength);
-                Paint pathPaint = new Paint();
-                pathPaint.setStrokeWidth(convertPxToDp(15));
-                //rect.setColor(Color.rgb(255,0,0));
-                pathPaint.setColor(Color.BLACK);
-                pathPaint.setStyle(Paint.Style.STROKE);
-                pathPaint.setPathEffect(new DashPathEffect(new float[]{20, 20,}, 0));
-                mSignatureBitmapCanvas.drawPath(path, pathPaint);
             }
         }
     }
@@ -973,6 +2342,15 @@ public class SignaturePad extends View {
         void onClear();
     }
 
+    /**
+     * Receives the result of an asynchronous export on the main thread.
+     */
+    public interface OnExportListener<T> {
+        void onExported(T result);
+
+        void onExportFailed(Throwable error);
+    }
+
     public class TextBuilder{
         private String text;
         private @ColorInt int color = Color.BLACK;
@@ -980,6 +2358,7 @@ public class SignaturePad extends View {
         private int verticalAlign = TEXT_VERTICLAL_ALIGN_BOTTOM, horizontalAlign = TEXT_HORIZONTAL_ALIGN_CENTER;
         private Typeface typeface = Typeface.MONOSPACE;
         private float x,y, textLen, textHeight;
+        private Paint textPaint;
 
         private TextBuilder(String text){
             this.text = text;
@@ -1029,6 +2408,34 @@ public class SignaturePad extends View {
         }
 
         private void paint(Paint paint){
+            layout(paint);
+            ensureSignatureBitmap();
+            textPaint = paint;
+            draw();
+            inkChanged();
+//            invalidate(Math.round(x), Math.round(y), Math.round(x + textLen), Math.round(y - textHeight));
+            invalidate();
+            mTextBounds.set(x, y - textHeight, x + textLen, y + convertPxToDp(TEXT_PADDING_PX));
+            if(mOnSignedListener != null){
+                mOnSignedListener.onSigned();
+            }
+        }
+
+        /**
+         * Lays the text out again for the current pad size and draws it.
+         */
+        private void relayout(){
+            textPaint.setTextSize(maxTextSize * getResources().getDisplayMetrics().density);
+            layout(textPaint);
+            ensureSignatureBitmap();
+            draw();
+            mTextBounds.set(x, y - textHeight, x + textLen, y + convertPxToDp(TEXT_PADDING_PX));
+        }
+
+        /**
+         * Shrinks the text to the width of the pad and places it as aligned.
+         */
+        private void layout(Paint paint){
             textLen = paint.measureText(text);
             int tmpSize = maxTextSize;
             while(textLen > getWidth()){
@@ -1056,26 +2463,39 @@ public class SignaturePad extends View {
             else if(verticalAlign == TEXT_VERTICLAL_ALIGN_BOTTOM){
                 y = getHeight() - padding - textHeight;
             }
-            ensureSignatureBitmap();
-            mSignatureBitmapCanvas.drawText(text, x, y, paint);
-//            invalidate(Math.round(x), Math.round(y), Math.round(x + textLen), Math.round(y - textHeight));
-            invalidate();
-//            System.out.println("SETTING STROKES x:" + (x - padding) +" y: "+ ( y - textHeight - padding * 2));
-            setStrokes(x - padding, y - textHeight - padding * 2, 2);
-//            System.out.println("SETTING STROKES x:" + (x + textLen + padding) +" y: "+ ( y + textHeight + padding));
-            setStrokes(x + textLen + padding, y + textHeight + padding, 2);
-            if(mOnSignedListener != null){
-                mOnSignedListener.onSigned();
+        }
+
+        /**
+         * Draws the laid out text onto the surface, again after the raster was rebuilt.
+         */
+        private void draw(){
+            // Text has its own color
+            mSurface.convertToArgb();
+            int tiles = lockText();
+            for (int i = 0; i < tiles; i++) {
+                mSurface.getCanvas(i).drawText(text, x, y, textPaint);
             }
         }
 
+        /**
+         * Locks the tiles under the text, with a line of room for glyphs reaching out of it.
+         */
+        private int lockText(){
+            return mSurface.lock(x - textHeight, y - 2 * textHeight, x + textLen + textHeight, y + textHeight);
+        }
+
         private void clear(){
             Paint clearPaint = new Paint();
             clearPaint.setTypeface(typeface);
             clearPaint.setColor(Color.TRANSPARENT);
             clearPaint.setTextSize(maxTextSize * getResources().getDisplayMetrics().density);
             clearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
-            mSignatureBitmapCanvas.drawRect(x, y - textHeight, x + textLen, y + convertPxToDp(TEXT_PADDING_PX), clearPaint);
+            int tiles = lockText();
+            for (int i = 0; i < tiles; i++) {
+                mSurface.getCanvas(i).drawRect(x, y - textHeight, x + textLen, y + convertPxToDp(TEXT_PADDING_PX), clearPaint);
+            }
+            mTextBounds.setEmpty();
+            inkChanged();
 //            invalidate(Math.round(x), Math.round(y), Math.round(x + textLen), Math.round(y - textHeight));
         }
     }
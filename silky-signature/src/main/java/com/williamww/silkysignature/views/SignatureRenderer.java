@@ -0,0 +1,98 @@
+package com.williamww.silkysignature.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import com.williamww.silkysignature.utils.Bezier;
+import com.williamww.silkysignature.utils.StrokeCodec;
+import com.williamww.silkysignature.utils.StrokeEngine;
+import com.williamww.silkysignature.utils.StrokeStore;
+import com.williamww.silkysignature.utils.SvgRenderer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Renders stored strokes again without a pad, e.g. on a background thread to regenerate high
+ * resolution copies of signatures written by {@link SignaturePad#writeStrokes(java.io.OutputStream)}.
+ *
+ * The strokes are scaled to fit the requested size, centered, and keep their look at every
+ * scale because the widths are computed on the recorded samples. The SVG output comes from
+ * {@link SvgRenderer}, which needs no Android class. An instance is not thread-safe, use one
+ * per thread.
+ */
+public class SignatureRenderer {
+
+    private final StrokeCodec.Header mHeader;
+    private final StrokeStore mStrokes;
+    private final StrokeEngine mEngine = new StrokeEngine();
+    private int mRenderMode = SignaturePad.RENDER_MODE_POINTS;
+
+    /**
+     * @param header the pad size and pen the strokes were recorded with.
+     * @param strokes the strokes.
+     */
+    public SignatureRenderer(StrokeCodec.Header header, StrokeStore strokes) {
+        mHeader = header;
+        mStrokes = strokes;
+        mEngine.setPen(header.minWidth, header.maxWidth, header.velocityFilterWeight);
+    }
+
+    /**
+     * Reads strokes written by {@link SignaturePad#writeStrokes(java.io.OutputStream)}.
+     *
+     * @param stream the source stream, preferably buffered.
+     * @throws IOException if the stream is not a valid stroke stream.
+     */
+    public static SignatureRenderer read(InputStream stream) throws IOException {
+        StrokeStore strokes = new StrokeStore();
+        StrokeCodec.Header header = StrokeCodec.read(stream, strokes);
+        return new SignatureRenderer(header, strokes);
+    }
+
+    /**
+     * @param renderMode {@link SignaturePad#RENDER_MODE_POINTS} or {@link SignaturePad#RENDER_MODE_PATH}.
+     */
+    public SignatureRenderer setRenderMode(int renderMode) {
+        mRenderMode = renderMode;
+        return this;
+    }
+
+    /**
+     * Renders the strokes into a new transparent bitmap of the given size.
+     */
+    public Bitmap renderBitmap(int width, int height) {
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        renderBitmap(new Canvas(bitmap), width, height);
+        return bitmap;
+    }
+
+    /**
+     * Renders the strokes onto the given canvas, fitted into the given size.
+     */
+    public void renderBitmap(final Canvas canvas, int width, int height) {
+        final InkRenderer renderer = new InkRenderer(InkRenderer.createPenPaint(mHeader.penColor));
+        renderer.setRenderMode(mRenderMode);
+        mEngine.fit(mHeader.width, mHeader.height, width, height);
+        mEngine.render(mStrokes, new StrokeEngine.CurveListener() {
+            @Override
+            public void onCurve(Bezier curve, float startWidth, float endWidth) {
+                renderer.draw(canvas, curve, startWidth, endWidth);
+            }
+        });
+    }
+
+    /**
+     * Renders the strokes as SVG document of the given size.
+     */
+    public String renderSvg(int width, int height) {
+        return new SvgRenderer(mHeader, mStrokes).render(width, height);
+    }
+
+    /**
+     * Streams the strokes as SVG document of the given size to the given sink.
+     */
+    public void writeSvg(Appendable out, int width, int height) throws IOException {
+        new SvgRenderer(mHeader, mStrokes).write(out, width, height);
+    }
+}
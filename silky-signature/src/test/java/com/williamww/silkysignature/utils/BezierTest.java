@@ -0,0 +1,117 @@
+package com.williamww.silkysignature.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the adaptive length, the forward differencing stepper and the flattening step count
+ * against plain evaluation of the curve.
+ */
+public class BezierTest {
+
+    private final Random mRandom = new Random(42);
+
+    @Test
+    public void length_matchesFineReference() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            Bezier curve = randomCurve();
+            double expected = referenceLength(curve, 100000);
+            assertEquals(expected, curve.length(), Math.max(0.05, expected * 0.005));
+        }
+    }
+
+    @Test
+    public void length_ofStraightSegmentIsItsChord() throws Exception {
+        Bezier curve = curve(0, 0, 10, 0, 20, 0, 30, 0);
+        assertEquals(30f, curve.length(), 1e-4f);
+    }
+
+    @Test
+    public void stepper_matchesPointAtEndsAndMiddle() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            Bezier curve = randomCurve();
+            BezierStepper stepper = new BezierStepper().start(curve, 2);
+            assertPoint(curve, 0f, stepper);
+            stepper.next();
+            assertPoint(curve, 0.5f, stepper);
+            stepper.next();
+            assertPoint(curve, 1f, stepper);
+        }
+    }
+
+    @Test
+    public void stepper_reachesEndAfterManySteps() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            Bezier curve = randomCurve();
+            int steps = (int) Math.floor(curve.length());
+            BezierStepper stepper = new BezierStepper().start(curve, steps);
+            for (int s = 0; s < steps; s++) {
+                stepper.next();
+            }
+            assertEquals(curve.endPoint.x, stepper.x, 0.05f);
+            assertEquals(curve.endPoint.y, stepper.y, 0.05f);
+        }
+    }
+
+    @Test
+    public void flatteningSteps_ofStraightSegmentIsOne() throws Exception {
+        assertEquals(1, curve(0, 0, 100, 100, 200, 200, 300, 300).flatteningSteps(0.25f));
+        // Uneven control points on the line bend nothing either
+        assertEquals(1, curve(0, 0, 250, 0, 260, 0, 300, 0).flatteningSteps(0.25f));
+    }
+
+    @Test
+    public void flatteningSteps_growWithCurvature() throws Exception {
+        int gentle = curve(0, 0, 100, 10, 200, 10, 300, 0).flatteningSteps(0.25f);
+        int sharp = curve(0, 0, 100, 200, 200, 200, 300, 0).flatteningSteps(0.25f);
+        assertEquals(true, gentle > 1);
+        assertEquals(true, sharp > gentle);
+    }
+
+    private static void assertPoint(Bezier curve, float t, BezierStepper stepper) {
+        float x = curve.point(t, curve.startPoint.x, curve.control1.x, curve.control2.x, curve.endPoint.x);
+        float y = curve.point(t, curve.startPoint.y, curve.control1.y, curve.control2.y, curve.endPoint.y);
+        assertEquals(x, stepper.x, 1e-3f);
+        assertEquals(y, stepper.y, 1e-3f);
+    }
+
+    /**
+     * Length of the polyline through the given number of equal parameter steps.
+     */
+    private static double referenceLength(Bezier curve, int steps) {
+        double length = 0;
+        double lastX = curve.startPoint.x;
+        double lastY = curve.startPoint.y;
+        for (int i = 1; i <= steps; i++) {
+            double t = (double) i / steps;
+            double x = point(t, curve.startPoint.x, curve.control1.x, curve.control2.x, curve.endPoint.x);
+            double y = point(t, curve.startPoint.y, curve.control1.y, curve.control2.y, curve.endPoint.y);
+            length += Math.hypot(x - lastX, y - lastY);
+            lastX = x;
+            lastY = y;
+        }
+        return length;
+    }
+
+    private static double point(double t, double start, double c1, double c2, double end) {
+        double u = 1 - t;
+        return start * u * u * u + 3 * c1 * u * u * t + 3 * c2 * u * t * t + end * t * t * t;
+    }
+
+    private Bezier randomCurve() {
+        return curve(randomCoordinate(), randomCoordinate(), randomCoordinate(), randomCoordinate(),
+                randomCoordinate(), randomCoordinate(), randomCoordinate(), randomCoordinate());
+    }
+
+    private float randomCoordinate() {
+        return mRandom.nextFloat() * 400;
+    }
+
+    private static Bezier curve(float x0, float y0, float x1, float y1, float x2, float y2, float x3, float y3) {
+        return new Bezier().set(new TimedPoint().set(x0, y0), new TimedPoint().set(x1, y1),
+                new TimedPoint().set(x2, y2), new TimedPoint().set(x3, y3));
+    }
+}
@@ -0,0 +1,227 @@
+package com.williamww.silkysignature.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the float geometry kernel against the double precision, millisecond based math it
+ * replaced, so the strokes keep their shape and widths.
+ */
+public class GeometryEquivalenceTest {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final Random mRandom = new Random(42);
+
+    @Test
+    public void distanceTo_matchesLegacy() throws Exception {
+        for (int i = 0; i < 10000; i++) {
+            TimedPoint a = randomPoint(0);
+            TimedPoint b = randomPoint(0);
+            double expected = legacyDistance(a, b);
+            assertEquals(expected, a.distanceTo(b), Math.max(1e-4, expected * 1e-6));
+            assertEquals(expected * expected, a.distanceSquaredTo(b), Math.max(1e-2, expected * expected * 1e-6));
+        }
+    }
+
+    @Test
+    public void velocityFrom_nanosecondsMatchLegacyMilliseconds() throws Exception {
+        for (int i = 0; i < 10000; i++) {
+            long startMs = mRandom.nextInt(1000000);
+            long endMs = startMs + 1 + mRandom.nextInt(50);
+            TimedPoint start = randomPoint(startMs);
+            TimedPoint end = randomPoint(endMs);
+            float expected = legacyVelocity(end, start);
+
+            start.timestamp *= NANOS_PER_MILLI;
+            end.timestamp *= NANOS_PER_MILLI;
+            assertEquals(expected, end.velocityFrom(start), Math.max(1e-5, expected * 1e-5));
+        }
+    }
+
+    @Test
+    public void velocityFrom_withoutElapsedTimeIsZero() throws Exception {
+        TimedPoint start = new TimedPoint().set(10, 10, 5 * NANOS_PER_MILLI);
+        TimedPoint end = new TimedPoint().set(20, 30, 5 * NANOS_PER_MILLI);
+        // The legacy math returned Infinity here and NaN for equal points
+        assertEquals(0f, end.velocityFrom(start), 0f);
+        assertEquals(0f, start.velocityFrom(start), 0f);
+        assertEquals(0f, start.velocityFrom(end), 0f);
+    }
+
+    @Test
+    public void point_matchesLegacyDouble() throws Exception {
+        Bezier bezier = new Bezier();
+        for (int i = 0; i < 10000; i++) {
+            float t = mRandom.nextFloat();
+            float start = mRandom.nextFloat() * 4096;
+            float c1 = mRandom.nextFloat() * 4096;
+            float c2 = mRandom.nextFloat() * 4096;
+            float end = mRandom.nextFloat() * 4096;
+            assertEquals(legacyPoint(t, start, c1, c2, end), bezier.point(t, start, c1, c2, end), 2e-3);
+        }
+    }
+
+    @Test
+    public void strokeEngine_matchesLegacySmoothing() throws Exception {
+        for (int stroke = 0; stroke < 200; stroke++) {
+            List<float[]> samples = randomStroke();
+
+            final List<float[]> actual = new ArrayList<>();
+            StrokeStore store = new StrokeStore();
+            StrokeEngine engine = new StrokeEngine().setPen(3f, 12f, 0.9f);
+            engine.reset();
+            store.startStroke();
+            for (float[] sample : samples) {
+                engine.addPoint(store, sample[0], sample[1], (long) sample[2] * NANOS_PER_MILLI, new StrokeEngine.CurveListener() {
+                    @Override
+                    public void onCurve(Bezier curve, float startWidth, float endWidth) {
+                        actual.add(new float[]{curve.startPoint.x, curve.startPoint.y,
+                                curve.control1.x, curve.control1.y, curve.control2.x, curve.control2.y,
+                                curve.endPoint.x, curve.endPoint.y, startWidth, endWidth});
+                    }
+                });
+            }
+
+            List<float[]> expected = legacySmoothing(samples, 3f, 12f, 0.9f);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                for (int v = 0; v < 10; v++) {
+                    assertEquals(expected.get(i)[v], actual.get(i)[v], 1e-3f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void strokeCodec_keepsNanosecondsAndStoresMillisecondsCompactly() throws Exception {
+        StrokeStore store = new StrokeStore();
+        store.startStroke();
+        store.add(1, 2, 1000 * NANOS_PER_MILLI + 1234);
+        store.add(3, 4, 1016 * NANOS_PER_MILLI + 5678);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StrokeCodec.write(out, new StrokeCodec.Header(), store);
+        StrokeStore read = new StrokeStore();
+        StrokeCodec.read(new ByteArrayInputStream(out.toByteArray()), read);
+        assertEquals(store.getTime(0), read.getTime(0));
+        assertEquals(store.getTime(1), read.getTime(1));
+
+        // Millisecond timestamps need no more than millisecond ticks
+        StrokeStore millis = new StrokeStore();
+        millis.startStroke();
+        millis.add(1, 2, 1000 * NANOS_PER_MILLI);
+        millis.add(3, 4, 1016 * NANOS_PER_MILLI);
+        ByteArrayOutputStream compact = new ByteArrayOutputStream();
+        StrokeCodec.write(compact, new StrokeCodec.Header(), millis);
+        assertTrue(compact.size() < out.size());
+    }
+
+    private TimedPoint randomPoint(long timestamp) {
+        return new TimedPoint().set(mRandom.nextFloat() * 2000, mRandom.nextFloat() * 2000, timestamp);
+    }
+
+    /**
+     * A pen trace with strictly increasing millisecond timestamps.
+     */
+    private List<float[]> randomStroke() {
+        List<float[]> samples = new ArrayList<>();
+        float x = mRandom.nextFloat() * 1000, y = mRandom.nextFloat() * 1000;
+        long time = 1000 + mRandom.nextInt(100000);
+        int count = 4 + mRandom.nextInt(60);
+        for (int i = 0; i < count; i++) {
+            samples.add(new float[]{x, y, time});
+            x += mRandom.nextFloat() * 20 - 10;
+            y += mRandom.nextFloat() * 20 - 10;
+            time += 1 + mRandom.nextInt(20);
+        }
+        return samples;
+    }
+
+    private static double legacyDistance(TimedPoint a, TimedPoint b) {
+        return (float) Math.sqrt(Math.pow(b.x - a.x, 2) + Math.pow(b.y - a.y, 2));
+    }
+
+    private static float legacyVelocity(TimedPoint end, TimedPoint start) {
+        float velocity = (float) legacyDistance(start, end) / (end.timestamp - start.timestamp);
+        if (velocity != velocity) return 0f;
+        return velocity;
+    }
+
+    private static double legacyPoint(float t, float start, float c1, float c2, float end) {
+        return start * (1.0 - t) * (1.0 - t) * (1.0 - t)
+                + 3.0 * c1 * (1.0 - t) * (1.0 - t) * t
+                + 3.0 * c2 * (1.0 - t) * t * t
+                + end * t * t * t;
+    }
+
+    /**
+     * The smoothing of the pad as it was, on millisecond timestamps with double distances.
+     */
+    private static List<float[]> legacySmoothing(List<float[]> samples, float minWidth, float maxWidth, float weight) {
+        List<float[]> result = new ArrayList<>();
+        List<TimedPoint> points = new ArrayList<>();
+        float lastVelocity = 0;
+        float lastWidth = (float) Math.floor((minWidth + maxWidth) / 2);
+        for (float[] sample : samples) {
+            TimedPoint point = new TimedPoint().set(sample[0], sample[1], (long) sample[2]);
+            points.add(point);
+            if (points.size() == 1) {
+                points.add(new TimedPoint().set(sample[0], sample[1], (long) sample[2]));
+            }
+            if (points.size() > 3) {
+                TimedPoint[] c2 = legacyControlPoints(points.get(0), points.get(1), points.get(2));
+                TimedPoint[] c3 = legacyControlPoints(points.get(1), points.get(2), points.get(3));
+                TimedPoint start = points.get(1);
+                TimedPoint end = points.get(2);
+
+                float velocity = legacyVelocity(end, start);
+                velocity = weight * velocity + (1 - weight) * lastVelocity;
+                float newWidth = Math.max(maxWidth / (velocity + 1), minWidth);
+                result.add(new float[]{start.x, start.y, c2[1].x, c2[1].y, c3[0].x, c3[0].y,
+                        end.x, end.y, lastWidth, newWidth});
+                lastVelocity = velocity;
+                lastWidth = newWidth;
+                points.remove(0);
+            }
+        }
+        return result;
+    }
+
+    private static TimedPoint[] legacyControlPoints(TimedPoint s1, TimedPoint s2, TimedPoint s3) {
+        float dx1 = s1.x - s2.x;
+        float dy1 = s1.y - s2.y;
+        float dx2 = s2.x - s3.x;
+        float dy2 = s2.y - s3.y;
+
+        float m1X = (s1.x + s2.x) / 2.0f;
+        float m1Y = (s1.y + s2.y) / 2.0f;
+        float m2X = (s2.x + s3.x) / 2.0f;
+        float m2Y = (s2.y + s3.y) / 2.0f;
+
+        float l1 = (float) Math.sqrt(dx1 * dx1 + dy1 * dy1);
+        float l2 = (float) Math.sqrt(dx2 * dx2 + dy2 * dy2);
+
+        float dxm = (m1X - m2X);
+        float dym = (m1Y - m2Y);
+        float k = l2 / (l1 + l2);
+        if (Float.isNaN(k)) k = 0.0f;
+        float cmX = m2X + dxm * k;
+        float cmY = m2Y + dym * k;
+
+        float tx = s2.x - cmX;
+        float ty = s2.y - cmY;
+
+        return new TimedPoint[]{
+                new TimedPoint().set(m1X + tx, m1Y + ty, s2.timestamp),
+                new TimedPoint().set(m2X + tx, m2Y + ty, s2.timestamp)};
+    }
+}
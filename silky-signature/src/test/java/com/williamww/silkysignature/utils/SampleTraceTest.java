@@ -0,0 +1,132 @@
+package com.williamww.silkysignature.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays the bundled signature corpus and checks that a trace survives the text form and
+ * the stroke store.
+ */
+public class SampleTraceTest {
+
+    static final String[] CORPUS = {
+            "synthetic-initials", "synthetic-name", "synthetic-long",
+            "synthetic-taps", "synthetic-tremble", "synthetic-flourish"
+    };
+
+    @Test
+    public void corpus_replaysIntoSegments() throws Exception {
+        for (String name : CORPUS) {
+            SampleTrace trace = corpus(name);
+            StrokeInput input = newInput();
+            List<float[]> curves = new ArrayList<>();
+            assertEquals(name, trace.size() + strokes(trace), trace.replay(input, collect(curves)));
+            assertEquals(name, strokes(trace), input.getStore().strokeCount());
+            assertTrue(name, curves.size() >= strokes(trace));
+        }
+    }
+
+    @Test
+    public void text_roundTrip() throws Exception {
+        for (String name : CORPUS) {
+            SampleTrace trace = corpus(name);
+            StringWriter text = new StringWriter();
+            trace.write(text);
+            assertSame(trace, SampleTrace.read(new StringReader(text.toString())));
+        }
+    }
+
+    @Test
+    public void fromStrokes_replaysToTheSameInk() throws Exception {
+        for (String name : CORPUS) {
+            StrokeInput first = newInput();
+            List<float[]> firstCurves = new ArrayList<>();
+            corpus(name).replay(first, collect(firstCurves));
+
+            StrokeInput second = newInput();
+            List<float[]> secondCurves = new ArrayList<>();
+            SampleTrace.fromStrokes(first.getStore()).replay(second, collect(secondCurves));
+
+            assertEquals(name, first.getStore().size(), second.getStore().size());
+            assertEquals(name, firstCurves.size(), secondCurves.size());
+            for (int i = 0; i < firstCurves.size(); i++) {
+                assertArrayEquals(name, firstCurves.get(i), secondCurves.get(i), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void replay_addsTheDownSampleLikeThePad() throws Exception {
+        SampleTrace tap = new SampleTrace()
+                .add(SampleTrace.ACTION_DOWN, 10, 20, 1000)
+                .add(SampleTrace.ACTION_UP, 10, 20, 9000);
+        StrokeInput input = newInput();
+        List<float[]> curves = new ArrayList<>();
+        tap.replay(input, collect(curves));
+        // Down, its copy for the smoothing, down again as a move and up
+        assertEquals(4, input.getStore().size());
+        assertEquals(1, curves.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void read_rejectsInvalidLines() throws Exception {
+        SampleTrace.read(new StringReader("down 1 2 3\nhover 1 2 4\n"));
+    }
+
+    private static SampleTrace corpus(String name) throws IOException {
+        InputStream stream = SampleTraceTest.class.getResourceAsStream("/corpus/" + name + ".trace");
+        assertNotNull(name, stream);
+        try {
+            return SampleTrace.read(new InputStreamReader(stream, "UTF-8"));
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static StrokeInput newInput() {
+        StrokeEngine engine = new StrokeEngine().setPen(3f, 7f, 0.9f);
+        engine.reset();
+        return new StrokeInput(new StrokeStore(), new SampleFilter(), engine);
+    }
+
+    private static int strokes(SampleTrace trace) {
+        int count = 0;
+        for (int i = 0; i < trace.size(); i++) {
+            if (trace.getAction(i) == SampleTrace.ACTION_DOWN) count++;
+        }
+        return count;
+    }
+
+    private static StrokeEngine.CurveListener collect(final List<float[]> curves) {
+        return new StrokeEngine.CurveListener() {
+            @Override
+            public void onCurve(Bezier curve, float startWidth, float endWidth) {
+                curves.add(new float[]{curve.startPoint.x, curve.startPoint.y,
+                        curve.control1.x, curve.control1.y, curve.control2.x, curve.control2.y,
+                        curve.endPoint.x, curve.endPoint.y, startWidth, endWidth});
+            }
+        };
+    }
+
+    private static void assertSame(SampleTrace expected, SampleTrace actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getAction(i), actual.getAction(i));
+            assertEquals(expected.getX(i), actual.getX(i), 0f);
+            assertEquals(expected.getY(i), actual.getY(i), 0f);
+            assertEquals(expected.getTime(i), actual.getTime(i));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.williamww.silkysignature.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the smoothing pipeline and the SVG output without a pad.
+ */
+public class StrokeEngineTest {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    @Test
+    public void render_matchesIncrementalSmoothing() throws Exception {
+        StrokeStore store = new StrokeStore();
+        StrokeEngine live = newEngine();
+        live.reset();
+        List<float[]> drawn = new ArrayList<>();
+        for (int s = 0; s < 3; s++) {
+            store.startStroke();
+            for (int i = 0; i < 40; i++) {
+                float x = 50 + s * 200 + i * 4;
+                float y = 200 + (float) Math.sin(i * 0.3) * 60;
+                live.addPoint(store, x, y, (s * 1000 + i * 8) * NANOS_PER_MILLI, collect(drawn));
+            }
+        }
+
+        List<float[]> rendered = new ArrayList<>();
+        newEngine().render(store, collect(rendered));
+
+        assertEquals(drawn.size(), rendered.size());
+        for (int i = 0; i < drawn.size(); i++) {
+            for (int v = 0; v < 6; v++) {
+                assertEquals(drawn.get(i)[v], rendered.get(i)[v], 0f);
+            }
+        }
+    }
+
+    @Test
+    public void render_fasterStrokesAreThinner() throws Exception {
+        float slow = averageWidth(line(16 * NANOS_PER_MILLI));
+        float fast = averageWidth(line(2 * NANOS_PER_MILLI));
+        assertTrue(fast < slow);
+        assertTrue(fast >= 3f);
+        assertTrue(slow <= 7f);
+    }
+
+    @Test
+    public void fit_scalesPositionsAndWidthsAlike() throws Exception {
+        StrokeStore store = line(8 * NANOS_PER_MILLI);
+        List<float[]> original = new ArrayList<>();
+        newEngine().render(store, collect(original));
+
+        // 400x200 into 800x800: twice the size, centered vertically
+        List<float[]> fitted = new ArrayList<>();
+        newEngine().fit(400, 200, 800, 800).render(store, collect(fitted));
+
+        assertEquals(original.size(), fitted.size());
+        for (int i = 0; i < original.size(); i++) {
+            assertEquals(original.get(i)[0] * 2, fitted.get(i)[0], 1e-3f);
+            assertEquals(original.get(i)[1] * 2 + 200, fitted.get(i)[1], 1e-3f);
+            assertEquals(original.get(i)[4] * 2, fitted.get(i)[4], 1e-4f);
+            assertEquals(original.get(i)[5] * 2, fitted.get(i)[5], 1e-4f);
+        }
+    }
+
+    @Test
+    public void svgRenderer_rendersWithoutPad() throws Exception {
+        StrokeCodec.Header header = new StrokeCodec.Header();
+        header.width = 400;
+        header.height = 200;
+        header.minWidth = 3;
+        header.maxWidth = 7;
+        header.velocityFilterWeight = 0.9f;
+
+        String svg = new SvgRenderer(header, line(8 * NANOS_PER_MILLI)).render(800, 400);
+        assertTrue(svg.contains("height=\"400\""));
+        assertTrue(svg.contains("width=\"800\""));
+        assertTrue(svg.contains("<path"));
+
+        StringBuilder streamed = new StringBuilder();
+        new SvgRenderer(header, line(8 * NANOS_PER_MILLI)).write(streamed, 800, 400);
+        assertEquals(svg, streamed.toString());
+    }
+
+    private static StrokeEngine newEngine() {
+        return new StrokeEngine().setPen(3, 7, 0.9f);
+    }
+
+    /**
+     * A straight stroke over 200 pixels with the given time between samples of 4 pixels.
+     */
+    private static StrokeStore line(long interval) {
+        StrokeStore store = new StrokeStore();
+        store.startStroke();
+        StrokeEngine engine = newEngine();
+        engine.reset();
+        StrokeEngine.CurveListener ignore = collect(new ArrayList<float[]>());
+        for (int i = 0; i <= 50; i++) {
+            engine.addPoint(store, 100 + i * 4, 100, i * interval, ignore);
+        }
+        return store;
+    }
+
+    private static float averageWidth(StrokeStore store) {
+        List<float[]> curves = new ArrayList<>();
+        newEngine().render(store, collect(curves));
+        float sum = 0;
+        for (float[] curve : curves) {
+            sum += curve[5];
+        }
+        return sum / curves.size();
+    }
+
+    /**
+     * Collects start x, y, end x, y, start width and end width of every segment.
+     */
+    private static StrokeEngine.CurveListener collect(final List<float[]> out) {
+        return new StrokeEngine.CurveListener() {
+            @Override
+            public void onCurve(Bezier curve, float startWidth, float endWidth) {
+                out.add(new float[]{
+                        curve.startPoint.x, curve.startPoint.y,
+                        curve.endPoint.x, curve.endPoint.y,
+                        startWidth, endWidth});
+            }
+        };
+    }
+}